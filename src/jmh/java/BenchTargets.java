@@ -0,0 +1,265 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.commons.io.IOUtils;
+import org.bytedeco.javacpp.opencv_core.Mat;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+
+import static org.bytedeco.javacpp.opencv_core.CV_8UC1;
+import static org.bytedeco.javacpp.opencv_imgcodecs.IMREAD_GRAYSCALE;
+import static org.bytedeco.javacpp.opencv_imgcodecs.imdecode;
+
+/**
+ * Hot path operations for the JMH benchmarks in {@code bench}.
+ * <p>
+ * JMH can't generate harness code for classes in the default package, which is where all of
+ * the application lives, so the benchmarks call these JDK-typed static methods through
+ * method handles instead.
+ */
+public class BenchTargets {
+
+  static final String[] VACCINES = {"COVISHIELD", "COVAXIN", "SPUTNIK V"};
+  static final String[] SLOTS = {"09:00AM-11:00AM", "11:00AM-01:00PM", "01:00PM-03:00PM", "03:00PM-05:00PM"};
+
+  /**
+   * A calendarByDistrict response with {@code centers} centers of 7 sessions each. Roughly one
+   * session in twenty is an open 18+ session, the rest are full or 45+.
+   */
+  public static byte[] calendarPayload(int centers, long seed) throws IOException {
+    Random random = new Random(seed);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(centers * 2048);
+    try (JsonGenerator g = new JsonFactory().createGenerator(out)) {
+      g.writeStartObject();
+      g.writeArrayFieldStart("centers");
+      for (int c = 0; c < centers; c++) {
+        g.writeStartObject();
+        writeCenterFields(g, random, 500000 + c);
+        g.writeArrayFieldStart("sessions");
+        for (int d = 0; d < 7; d++) {
+          g.writeStartObject();
+          writeSessionFields(g, random, c, d);
+          g.writeEndObject();
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
+      g.writeEndArray();
+      g.writeEndObject();
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * A findByDistrict response (flat sessions) for {@code centers} centers, one session each.
+   */
+  public static byte[] sessionsPayload(int centers, long seed) throws IOException {
+    Random random = new Random(seed);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(centers * 1024);
+    try (JsonGenerator g = new JsonFactory().createGenerator(out)) {
+      g.writeStartObject();
+      g.writeArrayFieldStart("sessions");
+      for (int c = 0; c < centers; c++) {
+        g.writeStartObject();
+        writeCenterFields(g, random, 500000 + c);
+        writeSessionFields(g, random, c, 0);
+        g.writeEndObject();
+      }
+      g.writeEndArray();
+      g.writeEndObject();
+    }
+    return out.toByteArray();
+  }
+
+  private static void writeCenterFields(JsonGenerator g, Random random, int centerId) throws IOException {
+    boolean paid = random.nextInt(4) == 0;
+    g.writeNumberField("center_id", centerId);
+    g.writeStringField("name", "Centre " + centerId);
+    g.writeStringField("address", "Ward " + random.nextInt(200) + ", Main Road");
+    g.writeStringField("state_name", "Maharashtra");
+    g.writeStringField("district_name", "Mumbai");
+    g.writeStringField("block_name", "Ward " + random.nextInt(30));
+    g.writeNumberField("pincode", 400001 + random.nextInt(100));
+    g.writeNumberField("lat", 19);
+    g.writeNumberField("long", 72);
+    g.writeStringField("from", "09:00:00");
+    g.writeStringField("to", "17:00:00");
+    g.writeStringField("fee_type", paid ? "Paid" : "Free");
+    if (paid) {
+      g.writeArrayFieldStart("vaccine_fees");
+      g.writeStartObject();
+      g.writeStringField("vaccine", VACCINES[random.nextInt(VACCINES.length)]);
+      g.writeStringField("fee", "780");
+      g.writeEndObject();
+      g.writeEndArray();
+    }
+  }
+
+  private static void writeSessionFields(JsonGenerator g, Random random, int center, int day) throws IOException {
+    boolean open = random.nextInt(20) == 0;
+    int dose1 = open ? 2 + random.nextInt(50) : 0;
+    int dose2 = open ? random.nextInt(20) : 0;
+    g.writeStringField("session_id", String.format("%08x-%04x-4%03x-8000-%012x", center, day, random.nextInt(4096), random.nextLong() & 0xffffffffffffL));
+    g.writeStringField("date", String.format("%02d-06-2021", 10 + day));
+    g.writeNumberField("available_capacity", dose1 + dose2);
+    g.writeNumberField("available_capacity_dose1", dose1);
+    g.writeNumberField("available_capacity_dose2", dose2);
+    g.writeStringField("fee", "0");
+    g.writeNumberField("min_age_limit", random.nextBoolean() ? 18 : 45);
+    g.writeStringField("vaccine", VACCINES[random.nextInt(VACCINES.length)]);
+    g.writeArrayFieldStart("slots");
+    for (String slot : SLOTS) {
+      g.writeString(slot);
+    }
+    g.writeEndArray();
+  }
+
+  /**
+   * The original calendar path: body read into a String, parsed into a Map (getResponse) and again
+   * into {@link Root}, then filtered with the lambdas of Runner.main.
+   *
+   * @return number of bookable slots
+   */
+  @SuppressWarnings("unchecked")
+  public static int legacyCalendar(byte[] body) throws IOException {
+    String s = new String(body);
+    Map<String, Object> responseMap = Runner.jsonMapper.readValue(s, Map.class);
+    responseMap.put("_raw", s);
+    Root root = Runner.jsonMapper.readValue((String) responseMap.get("_raw"), Root.class);
+    int[] slots = {0};
+    root.centers.forEach(center -> center.sessions.forEach(session -> {
+      if (session.available_capacity > 1 && session.min_age_limit == 18) {
+        if (!center.fee_type.equalsIgnoreCase("Free")) {
+          return;
+        }
+        slots[0] += session.slots.size();
+      }
+    }));
+    return slots[0];
+  }
+
+  /**
+   * The current calendar path: {@link SlotMatcher} straight over the response stream.
+   *
+   * @return number of bookable slots
+   */
+  public static int streamingCalendar(byte[] body) throws IOException {
+    SlotMatcher matcher = new SlotMatcher(18, 2, 0, null, "Free");
+    int[] slots = {0};
+    matcher.matchCalendar(new ByteArrayInputStream(body), (center, session) -> slots[0] += session.slots.size());
+    return slots[0];
+  }
+
+  /**
+   * The original findByDistrict path of Runner2.main (Map + {@link Runner2.Root1}, dose 1 filter).
+   *
+   * @return number of bookable slots
+   */
+  @SuppressWarnings("unchecked")
+  public static int legacySessions(byte[] body) throws IOException {
+    String s = new String(body);
+    Map<String, Object> responseMap = Runner.jsonMapper.readValue(s, Map.class);
+    responseMap.put("_raw", s);
+    Runner2.Root1 root = Runner.jsonMapper.readValue((String) responseMap.get("_raw"), Runner2.Root1.class);
+    int[] slots = {0};
+    root.sessions.forEach(session -> {
+      int available_capacity = session.available_capacity_dose1;
+      if (session.available_capacity_dose1 == 0 && session.available_capacity_dose2 == 0 && session.available_capacity > 0) {
+        available_capacity = session.available_capacity;
+      }
+      if (available_capacity >= 2 && session.min_age_limit == 18) {
+        if (!session.fee_type.equalsIgnoreCase("Free")) {
+          return;
+        }
+        slots[0] += session.slots.size();
+      }
+    });
+    return slots[0];
+  }
+
+  /**
+   * The current findByDistrict path of Runner2.
+   *
+   * @return number of bookable slots
+   */
+  public static int streamingSessions(byte[] body) throws IOException {
+    SlotMatcher matcher = new SlotMatcher(18, 2, 1, null, "Free");
+    int[] slots = {0};
+    matcher.matchSessions(new ByteArrayInputStream(body), session -> slots[0] += session.slots.size());
+    return slots[0];
+  }
+
+  public static String sampleSvg() throws IOException {
+    try (InputStream in = BenchTargets.class.getResourceAsStream("/captcha-sample.svg")) {
+      return IOUtils.toString(in, StandardCharsets.UTF_8);
+    }
+  }
+
+  public static void svgToPng(String svgFile, String pngFile) throws Exception {
+    CaptchaSolver.svgToPng(svgFile, pngFile);
+  }
+
+  public static Object svgToImage(String svg) throws Exception {
+    return CaptchaSolver.svgToImage(svg);
+  }
+
+  public static Object cleanImage(Object image) {
+    return CaptchaSolver.cleanImage((BufferedImage) image);
+  }
+
+  public static AutoCloseable newPreprocessor(String denoise) {
+    return new CaptchaPreprocessor(CaptchaPreprocessor.Denoise.valueOf(denoise));
+  }
+
+  public static Object preprocess(Object preprocessor, Object image) {
+    return ((CaptchaPreprocessor) preprocessor).clean((BufferedImage) image);
+  }
+
+  public static Object preprocessPng(Object preprocessor, byte[] png) {
+    return ((CaptchaPreprocessor) preprocessor).clean(png);
+  }
+
+  public static byte[] toPng(Object image) throws IOException {
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    ImageIO.write((BufferedImage) image, "png", png);
+    return png.toByteArray();
+  }
+
+  /**
+   * The decoded grayscale Mat the old pipeline started from.
+   */
+  public static Object toGray(byte[] png) {
+    Mat encoded = new Mat(1, png.length, CV_8UC1);
+    encoded.data().put(png, 0, png.length);
+    Mat gray = imdecode(encoded, IMREAD_GRAYSCALE);
+    encoded.release();
+    return gray;
+  }
+
+  public static void preprocessBaseline(Object gray) {
+    CaptchaPreprocessor.cleanAllocating((Mat) gray).release();
+  }
+
+  public static AutoCloseable newSolver() {
+    return new CaptchaSolver();
+  }
+
+  public static String solve(Object solver, Object image) {
+    return ((CaptchaSolver) solver).solve((BufferedImage) image);
+  }
+
+  public static Object newDecoder() {
+    return SvgCaptchaDecoder.load(null);
+  }
+
+  public static String decode(Object decoder, String svg) {
+    return ((SvgCaptchaDecoder) decoder).decode(svg);
+  }
+}
@@ -0,0 +1,157 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Captcha stages of a booking attempt on the bundled sample captcha: rendering (old svg/png
+ * temp files vs in memory), pixel cleaning, OpenCV preprocessing (against the old allocating
+ * pipeline), svg decoding and tesseract.
+ * <p>
+ * {@link #ocr} needs tessdata on the classpath, exclude it otherwise (e.g. {@code -e ocr}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaptchaBenchmark {
+
+  private static final MethodHandle SAMPLE_SVG = Targets.handle("sampleSvg", String.class);
+  private static final MethodHandle SVG_TO_PNG = Targets.handle("svgToPng", void.class, String.class, String.class);
+  private static final MethodHandle SVG_TO_IMAGE = Targets.handle("svgToImage", Object.class, String.class);
+  private static final MethodHandle CLEAN_IMAGE = Targets.handle("cleanImage", Object.class, Object.class);
+  private static final MethodHandle NEW_PREPROCESSOR = Targets.handle("newPreprocessor", AutoCloseable.class, String.class);
+  private static final MethodHandle PREPROCESS = Targets.handle("preprocess", Object.class, Object.class, Object.class);
+  private static final MethodHandle PREPROCESS_PNG = Targets.handle("preprocessPng", Object.class, Object.class, byte[].class);
+  private static final MethodHandle TO_PNG = Targets.handle("toPng", byte[].class, Object.class);
+  private static final MethodHandle TO_GRAY = Targets.handle("toGray", Object.class, byte[].class);
+  private static final MethodHandle PREPROCESS_BASELINE = Targets.handle("preprocessBaseline", void.class, Object.class);
+  private static final MethodHandle NEW_DECODER = Targets.handle("newDecoder", Object.class);
+  private static final MethodHandle DECODE = Targets.handle("decode", String.class, Object.class, String.class);
+  private static final MethodHandle NEW_SOLVER = Targets.handle("newSolver", AutoCloseable.class);
+  private static final MethodHandle SOLVE = Targets.handle("solve", String.class, Object.class, Object.class);
+
+  private String svg;
+  private File svgFile;
+  private File pngFile;
+  private Object image;
+  private byte[] png;
+  private Object gray;
+  private Object decoder;
+
+  @Setup
+  public void setUp() throws Throwable {
+    svg = (String) SAMPLE_SVG.invokeExact();
+    svgFile = File.createTempFile("captcha-bench", ".svg");
+    pngFile = File.createTempFile("captcha-bench", ".png");
+    Files.write(svgFile.toPath(), svg.getBytes(StandardCharsets.UTF_8));
+    image = (Object) SVG_TO_IMAGE.invokeExact(svg);
+    png = (byte[]) TO_PNG.invokeExact(image);
+    gray = (Object) TO_GRAY.invokeExact(png);
+    decoder = (Object) NEW_DECODER.invokeExact();
+  }
+
+  @TearDown
+  public void tearDown() {
+    svgFile.delete();
+    pngFile.delete();
+  }
+
+  @Benchmark
+  public void svgToPng() throws Throwable {
+    SVG_TO_PNG.invokeExact(svgFile.getPath(), pngFile.getPath());
+  }
+
+  @Benchmark
+  public Object svgToImage() throws Throwable {
+    return (Object) SVG_TO_IMAGE.invokeExact(svg);
+  }
+
+  @Benchmark
+  public Object cleanImage() throws Throwable {
+    return (Object) CLEAN_IMAGE.invokeExact(image);
+  }
+
+  @Benchmark
+  public String svgDecode() throws Throwable {
+    return (String) DECODE.invokeExact(decoder, svg);
+  }
+
+  /**
+   * One preprocessor (and so one set of Mats) per benchmark thread, like one per pooled engine.
+   */
+  @State(Scope.Thread)
+  public static class Preprocessor {
+    @Param({"NONE", "MEDIAN", "CLOSE", "NLMEANS"})
+    public String denoise;
+
+    AutoCloseable preprocessor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+      preprocessor = (AutoCloseable) NEW_PREPROCESSOR.invokeExact(denoise);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+      preprocessor.close();
+    }
+  }
+
+  @Benchmark
+  public Object preprocess(Preprocessor state) throws Throwable {
+    return (Object) PREPROCESS.invokeExact((Object) state.preprocessor, image);
+  }
+
+  @Benchmark
+  public Object preprocessPng(Preprocessor state) throws Throwable {
+    return (Object) PREPROCESS_PNG.invokeExact((Object) state.preprocessor, png);
+  }
+
+  /**
+   * Fresh Mats and kernel per captcha and non-local means denoising, from the decoded png.
+   */
+  @Benchmark
+  public void preprocessBaseline() throws Throwable {
+    PREPROCESS_BASELINE.invokeExact(gray);
+  }
+
+  @State(Scope.Thread)
+  public static class Engine {
+    AutoCloseable solver;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+      solver = (AutoCloseable) NEW_SOLVER.invokeExact();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+      solver.close();
+    }
+  }
+
+  @Benchmark
+  public String ocr(Engine engine) throws Throwable {
+    return (String) SOLVE.invokeExact((Object) engine.solver, image);
+  }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse + match cost of a poll response, old (String, Map, POJO tree, lambdas) vs current
+ * (streaming {@code SlotMatcher}), for a small district and a metro district.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PollBenchmark {
+
+  private static final MethodHandle CALENDAR_PAYLOAD = Targets.handle("calendarPayload", byte[].class, int.class, long.class);
+  private static final MethodHandle SESSIONS_PAYLOAD = Targets.handle("sessionsPayload", byte[].class, int.class, long.class);
+  private static final MethodHandle LEGACY_CALENDAR = Targets.handle("legacyCalendar", int.class, byte[].class);
+  private static final MethodHandle STREAMING_CALENDAR = Targets.handle("streamingCalendar", int.class, byte[].class);
+  private static final MethodHandle LEGACY_SESSIONS = Targets.handle("legacySessions", int.class, byte[].class);
+  private static final MethodHandle STREAMING_SESSIONS = Targets.handle("streamingSessions", int.class, byte[].class);
+
+  /**
+   * Number of centers in the district, 20 is a small district, 400 a metro one.
+   */
+  @Param({"20", "400"})
+  public int centers;
+
+  private byte[] calendar;
+  private byte[] sessions;
+
+  @Setup
+  public void setUp() throws Throwable {
+    calendar = (byte[]) CALENDAR_PAYLOAD.invokeExact(centers, 42L);
+    sessions = (byte[]) SESSIONS_PAYLOAD.invokeExact(centers, 42L);
+    int legacy = (int) LEGACY_CALENDAR.invokeExact(calendar);
+    int streaming = (int) STREAMING_CALENDAR.invokeExact(calendar);
+    if (legacy != streaming) {
+      throw new IllegalStateException("calendar paths disagree: " + legacy + " vs " + streaming);
+    }
+    legacy = (int) LEGACY_SESSIONS.invokeExact(sessions);
+    streaming = (int) STREAMING_SESSIONS.invokeExact(sessions);
+    if (legacy != streaming) {
+      throw new IllegalStateException("findByDistrict paths disagree: " + legacy + " vs " + streaming);
+    }
+  }
+
+  @Benchmark
+  public int calendarLegacy() throws Throwable {
+    return (int) LEGACY_CALENDAR.invokeExact(calendar);
+  }
+
+  @Benchmark
+  public int calendarStreaming() throws Throwable {
+    return (int) STREAMING_CALENDAR.invokeExact(calendar);
+  }
+
+  @Benchmark
+  public int findByDistrictLegacy() throws Throwable {
+    return (int) LEGACY_SESSIONS.invokeExact(sessions);
+  }
+
+  @Benchmark
+  public int findByDistrictStreaming() throws Throwable {
+    return (int) STREAMING_SESSIONS.invokeExact(sessions);
+  }
+}
@@ -0,0 +1,24 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Looks up {@code BenchTargets} methods. Handles are kept in static finals by the benchmarks,
+ * so the JIT inlines through them like a direct call.
+ */
+final class Targets {
+
+  private Targets() {
+  }
+
+  static MethodHandle handle(String name, Class<?> returnType, Class<?>... parameterTypes) {
+    try {
+      Class<?> targets = Class.forName("BenchTargets");
+      return MethodHandles.publicLookup().findStatic(targets, name, MethodType.methodType(returnType, parameterTypes));
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+}
@@ -0,0 +1,232 @@
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.HttpEntityWrapper;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Per endpoint metrics of the API calls made through {@link HttpTransport}.
+ * <p>
+ * Every endpoint (last path segment of the url, e.g. findByDistrict, getRecaptcha, schedule) gets
+ * an {@link EndpointStats} registered as JMX MBean {@code cowin:type=Endpoint,name=<endpoint>}.
+ * -Dmetrics.port serves the same numbers as plain text on http://localhost:&lt;port&gt;/metrics,
+ * -Dmetrics=false turns recording off. Bodies read through {@link #parse} also get parse and match
+ * times, for the callbacks wrapped with {@link #matches}.
+ */
+public class ApiMetrics {
+
+  static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("metrics", "true"));
+  static final int PORT = Integer.getInteger("metrics.port", 0);
+
+  private static final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+  // nanos and calls of the match callbacks of the body parsed on this thread
+  private static final ThreadLocal<long[]> matching = ThreadLocal.withInitial(() -> new long[2]);
+
+  static {
+    if (ENABLED && PORT > 0) {
+      try {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
+        server.createContext("/metrics", exchange -> {
+          byte[] bytes = report().getBytes(StandardCharsets.UTF_8);
+          exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+          exchange.sendResponseHeaders(200, bytes.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+          }
+        });
+        server.start();
+        System.out.println("Metrics on http://localhost:" + PORT + "/metrics");
+      } catch (IOException e) {
+        System.out.println("Could not start metrics endpoint on port " + PORT + ": " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * @return stats of the endpoint {@code uri} points to, or null if metrics are off
+   */
+  public static EndpointStats endpoint(String uri) {
+    if (!ENABLED) {
+      return null;
+    }
+    return endpoints.computeIfAbsent(name(uri), ApiMetrics::register);
+  }
+
+  /**
+   * Reads a 200 body of {@code uri} with {@code reader}. The time the {@link #matches} callbacks
+   * took is recorded as match time of the endpoint, the rest as parse time.
+   */
+  public static <T> T parse(String uri, ApiResponse.BodyReader<T> reader, InputStream in) throws IOException {
+    EndpointStats stats = endpoint(uri);
+    if (stats == null) {
+      return reader.read(in);
+    }
+    long[] match = matching.get();
+    match[0] = 0;
+    match[1] = 0;
+    long start = System.nanoTime();
+    T body = reader.read(in);
+    long nanos = System.nanoTime() - start;
+    stats.onParse((nanos - match[0]) / 1000, match[1] > 0 ? match[0] / 1000 : -1);
+    return body;
+  }
+
+  /**
+   * Times {@code listener} as match time of the body {@link #parse}d on this thread.
+   */
+  public static <T> Consumer<T> matches(Consumer<T> listener) {
+    if (!ENABLED) {
+      return listener;
+    }
+    return value -> {
+      long start = System.nanoTime();
+      try {
+        listener.accept(value);
+      } finally {
+        matched(start);
+      }
+    };
+  }
+
+  public static <T, U> BiConsumer<T, U> matches(BiConsumer<T, U> listener) {
+    if (!ENABLED) {
+      return listener;
+    }
+    return (t, u) -> {
+      long start = System.nanoTime();
+      try {
+        listener.accept(t, u);
+      } finally {
+        matched(start);
+      }
+    };
+  }
+
+  private static void matched(long start) {
+    long[] match = matching.get();
+    match[0] += System.nanoTime() - start;
+    match[1]++;
+  }
+
+  static String name(String uri) {
+    int end = uri.indexOf('?');
+    if (end < 0) {
+      end = uri.length();
+    }
+    while (end > 0 && uri.charAt(end - 1) == '/') {
+      end--;
+    }
+    return uri.substring(uri.lastIndexOf('/', end - 1) + 1, end);
+  }
+
+  private static EndpointStats register(String name) {
+    EndpointStats stats = new EndpointStats(name);
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName("cowin:type=Endpoint,name=" + ObjectName.quote(name)));
+    } catch (JMException e) {
+      System.out.println("Could not register metrics of " + name + ": " + e.getMessage());
+    }
+    return stats;
+  }
+
+  /**
+   * @return all endpoints in the Prometheus text format
+   */
+  public static String report() {
+    StringBuilder sb = new StringBuilder();
+    new TreeMap<>(endpoints).forEach((name, stats) -> {
+      String label = "endpoint=\"" + name + "\"";
+      stats.statuses().forEach((status, count) ->
+          sb.append("cowin_requests_total{").append(label).append(",status=\"").append(status).append("\"} ").append(count).append('\n'));
+      sb.append("cowin_errors_total{").append(label).append("} ").append(stats.getErrors()).append('\n');
+      sb.append("cowin_rate_limited_total{").append(label).append("} ").append(stats.getRateLimited()).append('\n');
+      sb.append("cowin_bytes_received_total{").append(label).append("} ").append(stats.getBytesReceived()).append('\n');
+      quantiles(sb, "cowin_latency_ms", label, stats.latency);
+      quantiles(sb, "cowin_body_ms", label, stats.body);
+      quantiles(sb, "cowin_parse_ms", label, stats.parse);
+      quantiles(sb, "cowin_match_ms", label, stats.match);
+    });
+    return sb.toString();
+  }
+
+  private static void quantiles(StringBuilder sb, String metric, String label, LatencyHistogram histogram) {
+    for (double q : new double[]{0.5, 0.99}) {
+      sb.append(metric).append('{').append(label).append(",quantile=\"").append(q).append("\"} ")
+          .append(histogram.percentile(q) / 1000.0).append('\n');
+    }
+    sb.append(metric).append("_max{").append(label).append("} ").append(histogram.max() / 1000.0).append('\n');
+    sb.append(metric).append("_count{").append(label).append("} ").append(histogram.count()).append('\n');
+  }
+
+  /**
+   * Counts the bytes read from the response and the time until the stream is closed.
+   */
+  static final class MeteredEntity extends HttpEntityWrapper {
+    private final EndpointStats stats;
+    private boolean recorded;
+
+    MeteredEntity(HttpEntity entity, EndpointStats stats) {
+      super(entity);
+      this.stats = stats;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+      InputStream content = super.getContent();
+      if (content == null || recorded) {
+        return content;
+      }
+      long start = System.nanoTime();
+      return new FilterInputStream(content) {
+        private long read;
+
+        @Override
+        public int read() throws IOException {
+          int b = super.read();
+          if (b >= 0) {
+            read++;
+          }
+          return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          int n = super.read(b, off, len);
+          if (n > 0) {
+            read += n;
+          }
+          return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+          long skipped = super.skip(n);
+          read += skipped;
+          return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+          super.close();
+          if (!recorded) {
+            recorded = true;
+            stats.onBody(read, (System.nanoTime() - start) / 1000);
+          }
+        }
+      };
+    }
+  }
+}
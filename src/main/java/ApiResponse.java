@@ -0,0 +1,29 @@
+import lombok.ToString;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Typed result of an API call: status code plus the body decoded straight from the response stream.
+ * {@code body} is only set for 200 responses, otherwise the raw error text is kept in {@code error}.
+ */
+@ToString
+public class ApiResponse<T> {
+
+  /**
+   * Consumes a 200 response body while the connection is still open.
+   */
+  public interface BodyReader<T> {
+    T read(InputStream in) throws IOException;
+  }
+
+  public final int status_code;
+  public final T body;
+  public final String error;
+
+  public ApiResponse(int status_code, T body, String error) {
+    this.status_code = status_code;
+    this.body = body;
+    this.error = error;
+  }
+}
@@ -0,0 +1,221 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SLF4J logging that keeps console I/O off the poll loop and the booking threads.
+ * <p>
+ * A call only checks the level and queues format, arguments and thread name in a bounded ring
+ * buffer; the daemon "log" thread formats and writes them through slf4j-simple. When the buffer
+ * is full records are dropped and counted rather than making the caller wait. Arguments other
+ * than strings, boxed primitives, enums and throwables are turned into strings on the calling
+ * thread, so a list or parsed object that is still being filled is not read by the log thread.
+ * A record that fails to format is reported and skipped. What is still queued at exit is written
+ * by a shutdown hook.
+ * <p>
+ * -Dlog.level=trace|debug|info|warn|error (default info), -Dlog.buffer=1024 records,
+ * -Dlog.async=false to write on the calling thread. Other slf4j-simple options
+ * (-Dorg.slf4j.simpleLogger.*) still apply.
+ */
+public final class AsyncLog {
+
+  static final boolean ASYNC = Boolean.parseBoolean(System.getProperty("log.async", "true"));
+  static final int BUFFER = Integer.getInteger("log.buffer", 1024);
+
+  static {
+    // before the first LoggerFactory call, slf4j-simple reads its configuration only once
+    setDefault("org.slf4j.simpleLogger.defaultLogLevel", System.getProperty("log.level", "info"));
+    setDefault("org.slf4j.simpleLogger.logFile", "System.out");
+    setDefault("org.slf4j.simpleLogger.showDateTime", "true");
+    setDefault("org.slf4j.simpleLogger.dateTimeFormat", "HH:mm:ss.SSS");
+    setDefault("org.slf4j.simpleLogger.showShortLogName", "true");
+    // the writing thread is always "log", the calling thread goes into the message instead
+    setDefault("org.slf4j.simpleLogger.showThreadName", "false");
+  }
+
+  private static final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(BUFFER);
+  private static final AtomicLong dropped = new AtomicLong();
+  private static final Object writeLock = new Object();
+
+  static {
+    if (ASYNC) {
+      Thread writer = new Thread(AsyncLog::write, "log");
+      writer.setDaemon(true);
+      writer.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(AsyncLog::flush, "log-flush"));
+    }
+  }
+
+  private final Logger logger;
+
+  private AsyncLog(Logger logger) {
+    this.logger = logger;
+  }
+
+  public static AsyncLog get(Class<?> type) {
+    return new AsyncLog(LoggerFactory.getLogger(type));
+  }
+
+  public boolean isDebugEnabled() {
+    return logger.isDebugEnabled();
+  }
+
+  public void debug(String format, Object... args) {
+    if (logger.isDebugEnabled()) {
+      log(Level.DEBUG, format, args);
+    }
+  }
+
+  public void info(String format, Object... args) {
+    if (logger.isInfoEnabled()) {
+      log(Level.INFO, format, args);
+    }
+  }
+
+  public void warn(String format, Object... args) {
+    if (logger.isWarnEnabled()) {
+      log(Level.WARN, format, args);
+    }
+  }
+
+  public void error(String format, Object... args) {
+    if (logger.isErrorEnabled()) {
+      log(Level.ERROR, format, args);
+    }
+  }
+
+  /**
+   * @return records dropped so far because the buffer was full
+   */
+  public static long dropped() {
+    return dropped.get();
+  }
+
+  private void log(Level level, String format, Object[] args) {
+    Record record = new Record(logger, level, Thread.currentThread().getName(), format, ASYNC ? snapshot(args) : args);
+    if (!ASYNC) {
+      record.write();
+    } else if (!queue.offer(record)) {
+      dropped.incrementAndGet();
+    }
+  }
+
+  private static void write() {
+    List<Record> batch = new ArrayList<>();
+    long reported = 0;
+    while (true) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        return;
+      }
+      synchronized (writeLock) {
+        queue.drainTo(batch);
+        long lost = dropped.get();
+        if (lost > reported) {
+          batch.get(0).logger.warn("[log] {} records dropped, buffer of {} full", lost - reported, BUFFER);
+          reported = lost;
+        }
+        batch.forEach(AsyncLog::writeSafely);
+      }
+      batch.clear();
+    }
+  }
+
+  /**
+   * Writes what is still queued, e.g. before exit.
+   */
+  public static void flush() {
+    synchronized (writeLock) {
+      Record record;
+      while ((record = queue.poll()) != null) {
+        writeSafely(record);
+      }
+    }
+  }
+
+  private static void writeSafely(Record record) {
+    try {
+      record.write();
+    } catch (RuntimeException e) {
+      // one bad record must not end the log thread
+      record.logger.warn("[log] could not write a record from {} ({}): {}", record.thread, record.format, e.toString());
+    }
+  }
+
+  /**
+   * @return args with every mutable value replaced by its string, a copy only if anything changed
+   */
+  static Object[] snapshot(Object[] args) {
+    Object[] copy = args;
+    for (int i = 0; i < args.length; i++) {
+      Object arg = args[i];
+      if (arg == null || immutable(arg)) {
+        continue;
+      }
+      if (copy == args) {
+        copy = args.clone();
+      }
+      try {
+        copy[i] = String.valueOf(arg);
+      } catch (RuntimeException e) {
+        copy[i] = "[toString failed: " + e + "]";
+      }
+    }
+    return copy;
+  }
+
+  private static boolean immutable(Object arg) {
+    return arg instanceof String || arg instanceof Integer || arg instanceof Long || arg instanceof Double
+        || arg instanceof Boolean || arg instanceof Enum || arg instanceof Throwable || arg instanceof Character
+        || arg instanceof Float || arg instanceof Short || arg instanceof Byte;
+  }
+
+  private static void setDefault(String key, String value) {
+    if (System.getProperty(key) == null) {
+      System.setProperty(key, value);
+    }
+  }
+
+  private static final class Record {
+    final Logger logger;
+    final Level level;
+    final String thread;
+    final String format;
+    final Object[] args;
+
+    Record(Logger logger, Level level, String thread, String format, Object[] args) {
+      this.logger = logger;
+      this.level = level;
+      this.thread = thread;
+      this.format = format;
+      this.args = args;
+    }
+
+    void write() {
+      String format = "[" + thread + "] " + this.format;
+      switch (level) {
+        case ERROR:
+          logger.error(format, args);
+          break;
+        case WARN:
+          logger.warn(format, args);
+          break;
+        case INFO:
+          logger.info(format, args);
+          break;
+        case DEBUG:
+          logger.debug(format, args);
+          break;
+        default:
+          logger.trace(format, args);
+      }
+    }
+  }
+}
@@ -0,0 +1,251 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Races booking attempts for all slots matched by a single poll.
+ * <p>
+ * Every candidate runs through three stages: captcha preparation (fetch + render), captcha reading
+ * (one at a time by default, in the order captchas become ready) and the booking request.
+ * The first response accepted by the success predicate wins and every other attempt is dropped
+ * at its next stage boundary.
+ * <p>
+ * The server keeps one captcha per token and getRecaptcha replaces it, so by default an attempt
+ * only fetches its captcha once the previous attempt has sent its booking request or was dropped.
+ * -Dcaptcha.parallel=true fetches all captchas at once, for servers that accept several.
+ */
+public class BookingEngine implements AutoCloseable {
+
+  private static final AsyncLog log = AsyncLog.get(BookingEngine.class);
+
+  static final int THREADS = Integer.getInteger("booking.threads", 4);
+  static final int CAPTCHA_WINDOWS = Integer.getInteger("captcha.windows", 1);
+  static final boolean CAPTCHA_PARALLEL = Boolean.parseBoolean(System.getProperty("captcha.parallel", "false"));
+
+  public interface Step<T, R> {
+    R apply(T t) throws Exception;
+  }
+
+  public interface BookStep {
+    /**
+     * @param captcha the prepared captcha, so that an answer the server accepted can be learned
+     * @param text    its text as read by {@code readCaptcha}
+     */
+    Map<String, Object> book(Candidate candidate, Captcha captcha, String text) throws Exception;
+  }
+
+  /**
+   * One bookable slot of a session together with its request body up to the captcha, see {@link BookingTemplate}.
+   */
+  public static class Candidate {
+    private static final AtomicLong attempts = new AtomicLong();
+
+    // correlates the log lines and TraceEvents of one booking attempt
+    public final long attempt_id = attempts.incrementAndGet();
+    public final int center_id;
+    public final String session_id;
+    public final String slot;
+    public final byte[] payload;
+    public final Object source;
+
+    public Candidate(int center_id, String session_id, String slot, byte[] payload, Object source) {
+      this.center_id = center_id;
+      this.session_id = session_id;
+      this.slot = slot;
+      this.payload = payload;
+      this.source = source;
+    }
+
+    @Override
+    public String toString() {
+      return "Candidate(attempt_id=" + attempt_id + ", center_id=" + center_id + ", session_id=" + session_id + ", slot=" + slot + ")";
+    }
+  }
+
+  /**
+   * Outcome of a won race.
+   */
+  public static class Booking {
+    public final Candidate candidate;
+    public final Map<String, Object> response;
+
+    Booking(Candidate candidate, Map<String, Object> response) {
+      this.candidate = candidate;
+      this.response = response;
+    }
+  }
+
+  private final Step<Candidate, Captcha> prepareCaptcha;
+  private final Step<Captcha, String> readCaptcha;
+  private final BookStep book;
+  private final Predicate<Map<String, Object>> booked;
+
+  private final ExecutorService workers = Executors.newFixedThreadPool(THREADS, daemon("booking-worker"));
+  // captcha input is shown to a single human, so by default it is serialized, -Dcaptcha.windows
+  // lets that many captcha windows be open at once
+  private final ExecutorService reader = Executors.newFixedThreadPool(CAPTCHA_WINDOWS, daemon("captcha-reader"));
+  // completes when the attempt holding the token's captcha is done with it
+  private CompletableFuture<Void> captchaTurn = CompletableFuture.completedFuture(null);
+
+  /**
+   * @param prepareCaptcha fetches and renders a captcha for the candidate, returns what {@code readCaptcha} needs or null to skip
+   * @param readCaptcha    turns a prepared captcha into its text
+   * @param book           sends the booking request with the solved captcha
+   * @param booked         decides whether a booking response is a confirmed appointment
+   */
+  public BookingEngine(Step<Candidate, Captcha> prepareCaptcha, Step<Captcha, String> readCaptcha, BookStep book,
+                       Predicate<Map<String, Object>> booked) {
+    this.prepareCaptcha = prepareCaptcha;
+    this.readCaptcha = readCaptcha;
+    this.book = book;
+    this.booked = booked;
+  }
+
+  /**
+   * Runs all candidates concurrently and blocks until one is booked or all have failed.
+   */
+  public Optional<Booking> bookFirst(List<Candidate> candidates) {
+    Race race = newRace();
+    candidates.forEach(race::submit);
+    return race.await();
+  }
+
+  /**
+   * Starts an empty race that candidates can join while a poll response is still being parsed.
+   */
+  public Race newRace() {
+    return new Race();
+  }
+
+  public class Race {
+    private final CompletableFuture<Booking> winner = new CompletableFuture<>();
+    private final List<CompletableFuture<Void>> attempts = new ArrayList<>();
+
+    /**
+     * Starts preparing the captcha for this candidate right away.
+     */
+    public void submit(Candidate candidate) {
+      CompletableFuture<Void> done = new CompletableFuture<>();
+      CompletableFuture<Void> attempt = takeCaptchaTurn(done)
+          .thenApplyAsync(ready -> stage(winner, candidate, prepareCaptcha, candidate), workers)
+          .thenApplyAsync(prepared -> {
+            String text = stage(winner, candidate, readCaptcha, prepared);
+            return text == null ? null : new Answer(prepared, text);
+          }, reader)
+          .thenApplyAsync(answer -> stage(winner, candidate, a -> {
+            TraceEvents.Book event = TraceEvents.begin(new TraceEvents.Book());
+            Map<String, Object> response = book.book(candidate, a.captcha, a.text);
+            if (event.isEnabled()) {
+              event.status = (int) response.getOrDefault("status_code", 0);
+              event.booked = booked.test(response);
+            }
+            event.commit();
+            return response;
+          }, answer), workers)
+          .thenAccept(response -> {
+            if (booked.test(response)) {
+              winner.complete(new Booking(candidate, response));
+            } else {
+              log.info("Failed :( {} status {}: {}", candidate, response.get("status_code"), response.get("error"));
+            }
+          })
+          .exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (!(cause instanceof CancellationException)) {
+              log.warn("Booking attempt failed: {} {}", candidate, cause.toString());
+            }
+            return null;
+          })
+          .whenComplete((ignored, e) -> done.complete(null));
+      synchronized (attempts) {
+        attempts.add(attempt);
+      }
+    }
+
+    public boolean isEmpty() {
+      synchronized (attempts) {
+        return attempts.isEmpty();
+      }
+    }
+
+    /**
+     * Blocks until a candidate is booked or every submitted attempt has finished.
+     */
+    public Optional<Booking> await() {
+      CompletableFuture<?>[] started;
+      synchronized (attempts) {
+        if (attempts.isEmpty()) {
+          return Optional.empty();
+        }
+        started = attempts.toArray(new CompletableFuture<?>[0]);
+      }
+      CompletableFuture.anyOf(winner, CompletableFuture.allOf(started)).join();
+      return Optional.ofNullable(winner.getNow(null));
+    }
+  }
+
+  /**
+   * @param done completes when the new attempt no longer needs its captcha
+   * @return completes when the new attempt may fetch its captcha
+   */
+  private synchronized CompletableFuture<Void> takeCaptchaTurn(CompletableFuture<Void> done) {
+    if (CAPTCHA_PARALLEL) {
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> previous = captchaTurn;
+    captchaTurn = done;
+    return previous;
+  }
+
+  // a read captcha on its way to the book step
+  private static final class Answer {
+    final Captcha captcha;
+    final String text;
+
+    Answer(Captcha captcha, String text) {
+      this.captcha = captcha;
+      this.text = text;
+    }
+  }
+
+  private static <T, R> R stage(CompletableFuture<?> winner, Candidate candidate, Step<T, R> step, T input) {
+    if (winner.isDone() || input == null) {
+      throw new CancellationException();
+    }
+    TraceEvents.attempt(candidate);
+    try {
+      return step.apply(input);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CompletionException(e);
+    } finally {
+      TraceEvents.attempt(null);
+    }
+  }
+
+  private static ThreadFactory daemon(String prefix) {
+    AtomicInteger counter = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+
+  @Override
+  public void close() {
+    workers.shutdownNow();
+    reader.shutdownNow();
+  }
+}
@@ -0,0 +1,145 @@
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHeader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * schedule / reschedule request bodies serialized ahead of time.
+ * <p>
+ * Dose and beneficiaries, or the appointment to reschedule, are written once when the template
+ * is made. A matched slot appends its session_id, center_id and slot ({@link #payload}), and
+ * sending only appends the captcha ({@link #body}), so the booking POST does no JSON
+ * serialization. The request headers are kept as a ready array and only rebuilt when the token
+ * changes.
+ */
+public final class BookingTemplate {
+
+  private static final JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+
+  private static final byte[] SESSION_ID = ascii("\"session_id\":\"");
+  private static final byte[] CENTER_ID = ascii("\",\"center_id\":");
+  private static final byte[] SLOT = ascii(",\"slot\":\"");
+  private static final byte[] SLOT_AFTER_SESSION = ascii("\",\"slot\":\"");
+  private static final byte[] CAPTCHA = ascii("\",\"captcha\":\"");
+  private static final byte[] END = ascii("\"}");
+
+  // '{' plus the fixed fields, each followed by ','
+  private final byte[] head;
+  private final boolean center;
+  private volatile Headers headers;
+
+  private BookingTemplate(byte[] head, boolean center) {
+    this.head = head;
+    this.center = center;
+  }
+
+  /**
+   * Body of /v2/appointment/schedule: dose, beneficiaries, session_id, center_id, slot, captcha.
+   */
+  public static BookingTemplate schedule(int dose, List<String> beneficiaries) throws IOException {
+    Map<String, Object> fixed = new LinkedHashMap<>();
+    fixed.put("dose", dose);
+    fixed.put("beneficiaries", beneficiaries);
+    return new BookingTemplate(head(fixed), true);
+  }
+
+  /**
+   * Body of /v2/appointment/reschedule: appointment_id, session_id, slot, captcha.
+   */
+  public static BookingTemplate reschedule(String appointment_id) throws IOException {
+    Map<String, Object> fixed = new LinkedHashMap<>();
+    fixed.put("appointment_id", appointment_id);
+    return new BookingTemplate(head(fixed), false);
+  }
+
+  private static byte[] head(Map<String, Object> fixed) throws IOException {
+    // only called once per run, the mapper is not kept
+    byte[] json = new ObjectMapper().writeValueAsBytes(fixed);
+    // {"dose":1,"beneficiaries":[...]} -> {"dose":1,"beneficiaries":[...],
+    json[json.length - 1] = ',';
+    return json;
+  }
+
+  /**
+   * @return the body of one slot up to the captcha, for {@link BookingEngine.Candidate#payload}
+   */
+  public byte[] payload(String session_id, int center_id, String slot) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(head.length + 128);
+    write(out, head);
+    write(out, SESSION_ID);
+    write(out, encoder.quoteAsUTF8(session_id));
+    if (center) {
+      write(out, CENTER_ID);
+      write(out, ascii(Integer.toString(center_id)));
+      write(out, SLOT);
+    } else {
+      write(out, SLOT_AFTER_SESSION);
+    }
+    write(out, encoder.quoteAsUTF8(slot));
+    write(out, CAPTCHA);
+    return out.toByteArray();
+  }
+
+  /**
+   * @return the complete request body: {@code payload} with the captcha appended
+   */
+  public static byte[] body(byte[] payload, String captcha) {
+    byte[] text = encoder.quoteAsUTF8(captcha);
+    byte[] body = Arrays.copyOf(payload, payload.length + text.length + END.length);
+    System.arraycopy(text, 0, body, payload.length, text.length);
+    System.arraycopy(END, 0, body, payload.length + text.length, END.length);
+    return body;
+  }
+
+  /**
+   * @param header the shared request headers, whose Authorization changes when the token is renewed
+   * @return the same headers plus the JSON content type, reused until the token changes
+   */
+  public Header[] headers(Map<String, String> header) {
+    String authorization = header.get(HttpHeaders.AUTHORIZATION);
+    Headers current = headers;
+    if (current == null || !Objects.equals(current.authorization, authorization)) {
+      Header[] all = new Header[header.size() + 1];
+      int i = 0;
+      all[i++] = new BasicHeader("Content-type", ContentType.APPLICATION_JSON);
+      for (Map.Entry<String, String> e : header.entrySet()) {
+        if (i == all.length) {
+          break;
+        }
+        all[i++] = new BasicHeader(e.getKey(), e.getValue());
+      }
+      current = new Headers(authorization, Arrays.copyOf(all, i));
+      headers = current;
+    }
+    return current.all;
+  }
+
+  private static void write(ByteArrayOutputStream out, byte[] bytes) {
+    out.write(bytes, 0, bytes.length);
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static final class Headers {
+    final String authorization;
+    final Header[] all;
+
+    Headers(String authorization, Header[] all) {
+      this.authorization = authorization;
+      this.all = all;
+    }
+  }
+}
@@ -0,0 +1,21 @@
+import java.awt.image.BufferedImage;
+
+/**
+ * A fetched booking captcha: the SVG as sent by the API, its in-memory raster and the OCR
+ * reading of that raster (null when OCR is off or not confident).
+ */
+public class Captcha {
+  public final String svg;
+  public final BufferedImage image;
+  public final String ocr;
+
+  public Captcha(String svg, BufferedImage image) {
+    this(svg, image, null);
+  }
+
+  public Captcha(String svg, BufferedImage image, String ocr) {
+    this.svg = svg;
+    this.image = image;
+    this.ocr = ocr;
+  }
+}
@@ -2,51 +2,135 @@ import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Every captcha gets its own window and future, completed from the Submit action. Several
+ * windows can be open at once, closing one cancels its future and an unanswered one times out
+ * after -Dcaptcha.timeoutSec (default 120).
+ *
  * @author Nishant Kumar
  * @date 12/05/21
  */
 public class CaptchaWindow {
-  private static String captchaText;
-  private static final AtomicBoolean isButtonClick = new AtomicBoolean(false);
+  static final long TIMEOUT_SEC = Long.getLong("captcha.timeoutSec", 120);
+
+  private static final ScheduledExecutorService timeouts = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "captcha-timeout");
+    thread.setDaemon(true);
+    return thread;
+  });
+  // open windows, to cascade new ones instead of stacking them
+  private static final AtomicInteger open = new AtomicInteger();
 
   public static void main(String[] args) {
 
   }
 
   public static String createWindow() throws IOException {
-    isButtonClick.set(false);
-    JFrame frame = new JFrame("Captcha");
-    frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-
-    createUI(frame);
-    frame.setSize(560, 200);
-    frame.setLocationRelativeTo(null);
-    frame.setVisible(true);
-    while (!isButtonClick.get()) {
-      try {
-        Thread.sleep(200);
-      } catch (InterruptedException e) {
-      }
+    return createWindow("captcha-new.png");
+  }
+
+  public static String createWindow(String imageFile) throws IOException {
+    return createWindow(ImageIO.read(new File(imageFile)));
+  }
+
+  /**
+   * Shows the captcha and blocks until it was typed, see {@link #request}.
+   */
+  public static String createWindow(BufferedImage captchaImage) throws IOException {
+    return createWindow(captchaImage, null);
+  }
+
+  /**
+   * Like {@link #createWindow(BufferedImage)}, with {@code suggestion} typed in and selected.
+   */
+  public static String createWindow(BufferedImage captchaImage, String suggestion) throws IOException {
+    try {
+      return request(captchaImage, suggestion, TIMEOUT_SEC, TimeUnit.SECONDS).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for captcha");
+    } catch (CancellationException e) {
+      throw new IOException("Captcha window closed", e);
+    } catch (ExecutionException e) {
+      throw new IOException("No captcha input: " + e.getCause(), e.getCause());
     }
-    return captchaText;
   }
 
-  private static void createUI(final JFrame frame) throws IOException {
+  /**
+   * Opens a window for the captcha without waiting for it.
+   *
+   * @return the typed text, cancelled if the window is closed, exceptionally completed with a
+   * {@link TimeoutException} if nothing was submitted in time
+   */
+  public static CompletableFuture<String> request(BufferedImage captchaImage, long timeout, TimeUnit unit) {
+    return request(captchaImage, null, timeout, unit);
+  }
+
+  /**
+   * @param suggestion text to pre-fill (selected, so typing replaces it and Enter submits it), or null
+   */
+  public static CompletableFuture<String> request(BufferedImage captchaImage, String suggestion, long timeout,
+                                                  TimeUnit unit) {
+    CompletableFuture<String> text = new CompletableFuture<>();
+    SwingUtilities.invokeLater(() -> {
+      if (text.isDone()) {
+        return;
+      }
+      JFrame frame = new JFrame("Captcha");
+      frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+      frame.addWindowListener(new WindowAdapter() {
+        @Override
+        public void windowClosed(WindowEvent e) {
+          open.decrementAndGet();
+          text.cancel(false);
+        }
+      });
+
+      createUI(frame, captchaImage, suggestion, text);
+      frame.setSize(560, 200);
+      frame.setLocationRelativeTo(null);
+      int cascade = open.getAndIncrement() * 30;
+      frame.setLocation(frame.getX() + cascade, frame.getY() + cascade);
+      frame.setVisible(true);
+      // submitted, timed out or cancelled elsewhere: the window has served its purpose
+      text.whenComplete((t, e) -> SwingUtilities.invokeLater(frame::dispose));
+    });
+    ScheduledFuture<?> timer = timeouts.schedule(
+        () -> text.completeExceptionally(new TimeoutException("No captcha input after " + timeout + " " + unit)), timeout, unit);
+    text.whenComplete((t, e) -> timer.cancel(false));
+    return text;
+  }
+
+  private static void createUI(final JFrame frame, BufferedImage captchaImage, String suggestion,
+                               CompletableFuture<String> text) {
     JPanel panel = new JPanel();
     BorderLayout layout = new BorderLayout();
     panel.setLayout(layout);
-    BufferedImage captchaImage = ImageIO.read(new File("captcha-new.png"));
     JLabel picLabel = new JLabel(new ImageIcon(captchaImage));
     panel.add(picLabel, BorderLayout.NORTH);
 
     JButton inputButton = new JButton("Submit");
     JTextField textField = new JTextField(10);
+    if (suggestion != null) {
+      textField.setText(suggestion);
+      textField.selectAll();
+    }
 
     Action action = new AbstractAction() {
       @Override
@@ -63,10 +147,9 @@ public class CaptchaWindow {
     panel.add(inputButton, BorderLayout.PAGE_END);
 
     inputButton.addActionListener((ActionEvent e) -> {
-      captchaText = textField.getText();
+      String captchaText = textField.getText();
       System.out.println("User captcha Input: " + captchaText);
-      frame.dispose();
-      isButtonClick.set(true);
+      text.complete(captchaText);
     });
 //
 //    panel.add(iconButton);
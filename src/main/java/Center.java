@@ -0,0 +1,26 @@
+import com.fasterxml.jackson.annotation.JsonAlias;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Center of calendarByDistrict / calendarByPin responses, built by {@link SlotMatcher}.
+ */
+@ToString
+class Center {
+  public int center_id;
+  public String name;
+  public String address;
+  public String state_name;
+  public String district_name;
+  public String block_name;
+  public int pincode;
+  public int lat;
+  @JsonAlias({"long"})
+  public int _long;
+  public String from;
+  public String to;
+  public String fee_type;
+  public List<VaccineFee> vaccine_fees;
+  public List<Session> sessions;
+}
@@ -0,0 +1,179 @@
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of one API endpoint.
+ * <p>
+ * Latency runs from sending the request to the response headers; body time from opening the
+ * response stream to closing it, which for streamed polls includes parsing and slot matching.
+ * Bodies read through {@link ApiMetrics#parse} split that up: parse time is reading, decoding and
+ * filtering the body (a streamed body is read while it is parsed), match time what handling the
+ * sessions it matched took, recorded only for bodies with matches.
+ */
+public class EndpointStats implements EndpointStatsMBean {
+
+  final String name;
+  final LatencyHistogram latency = new LatencyHistogram();
+  final LatencyHistogram body = new LatencyHistogram();
+  final LatencyHistogram parse = new LatencyHistogram();
+  final LatencyHistogram match = new LatencyHistogram();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder rateLimited = new LongAdder();
+  private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+  EndpointStats(String name) {
+    this.name = name;
+  }
+
+  void onResponse(int status, long micros) {
+    latency.record(micros);
+    statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+    if (status == 403 || status == 429) {
+      rateLimited.increment();
+    }
+  }
+
+  void onBody(long read, long micros) {
+    bytes.add(read);
+    body.record(micros);
+  }
+
+  /**
+   * @param matchMicros time of the match callbacks, -1 if nothing matched
+   */
+  void onParse(long parseMicros, long matchMicros) {
+    parse.record(parseMicros);
+    if (matchMicros >= 0) {
+      match.record(matchMicros);
+    }
+  }
+
+  void onError() {
+    errors.increment();
+  }
+
+  /**
+   * @return status code -> responses, sorted by code
+   */
+  Map<Integer, Long> statuses() {
+    Map<Integer, Long> counts = new TreeMap<>();
+    statuses.forEach((status, count) -> counts.put(status, count.sum()));
+    return counts;
+  }
+
+  @Override
+  public long getCalls() {
+    return latency.count();
+  }
+
+  @Override
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  @Override
+  public long getRateLimited() {
+    return rateLimited.sum();
+  }
+
+  @Override
+  public long getBytesReceived() {
+    return bytes.sum();
+  }
+
+  @Override
+  public String getStatusCodes() {
+    StringBuilder sb = new StringBuilder();
+    statuses().forEach((status, count) -> sb.append(sb.length() == 0 ? "" : " ").append(status).append('=').append(count));
+    return sb.toString();
+  }
+
+  @Override
+  public double getLatencyP50Millis() {
+    return latency.percentile(0.5) / 1000.0;
+  }
+
+  @Override
+  public double getLatencyP99Millis() {
+    return latency.percentile(0.99) / 1000.0;
+  }
+
+  @Override
+  public double getLatencyMaxMillis() {
+    return latency.max() / 1000.0;
+  }
+
+  @Override
+  public double getLatencyMeanMillis() {
+    return latency.mean() / 1000.0;
+  }
+
+  @Override
+  public double getBodyP50Millis() {
+    return body.percentile(0.5) / 1000.0;
+  }
+
+  @Override
+  public double getBodyP99Millis() {
+    return body.percentile(0.99) / 1000.0;
+  }
+
+  @Override
+  public double getBodyMaxMillis() {
+    return body.max() / 1000.0;
+  }
+
+  @Override
+  public double getParseP50Millis() {
+    return parse.percentile(0.5) / 1000.0;
+  }
+
+  @Override
+  public double getParseP99Millis() {
+    return parse.percentile(0.99) / 1000.0;
+  }
+
+  @Override
+  public double getParseMaxMillis() {
+    return parse.max() / 1000.0;
+  }
+
+  @Override
+  public double getMatchP50Millis() {
+    return match.percentile(0.5) / 1000.0;
+  }
+
+  @Override
+  public double getMatchP99Millis() {
+    return match.percentile(0.99) / 1000.0;
+  }
+
+  @Override
+  public double getMatchMaxMillis() {
+    return match.max() / 1000.0;
+  }
+
+  @Override
+  public void reset() {
+    latency.reset();
+    body.reset();
+    parse.reset();
+    match.reset();
+    bytes.reset();
+    errors.reset();
+    rateLimited.reset();
+    statuses.clear();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: calls %d (%s), errors %d, latency p50 %.1f p99 %.1f max %.1f ms, body p50 %.1f p99 %.1f ms, "
+            + "parse p50 %.1f p99 %.1f ms, match p50 %.1f p99 %.1f ms, %d bytes",
+        name, getCalls(), getStatusCodes(), getErrors(), getLatencyP50Millis(), getLatencyP99Millis(), getLatencyMaxMillis(),
+        getBodyP50Millis(), getBodyP99Millis(), getParseP50Millis(), getParseP99Millis(), getMatchP50Millis(),
+        getMatchP99Millis(), getBytesReceived());
+  }
+}
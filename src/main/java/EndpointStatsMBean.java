@@ -0,0 +1,49 @@
+/**
+ * JMX view of one API endpoint, see {@link ApiMetrics}.
+ */
+public interface EndpointStatsMBean {
+
+  long getCalls();
+
+  long getErrors();
+
+  long getRateLimited();
+
+  long getBytesReceived();
+
+  /**
+   * @return e.g. "200=120 401=1"
+   */
+  String getStatusCodes();
+
+  double getLatencyP50Millis();
+
+  double getLatencyP99Millis();
+
+  double getLatencyMaxMillis();
+
+  double getLatencyMeanMillis();
+
+  double getBodyP50Millis();
+
+  double getBodyP99Millis();
+
+  double getBodyMaxMillis();
+
+  double getParseP50Millis();
+
+  double getParseP99Millis();
+
+  double getParseMaxMillis();
+
+  /**
+   * @return time to handle the sessions of one body, for bodies with matches
+   */
+  double getMatchP50Millis();
+
+  double getMatchP99Millis();
+
+  double getMatchMaxMillis();
+
+  void reset();
+}
@@ -0,0 +1,66 @@
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Properties;
+
+/**
+ * Starts a runner unattended, configured from a properties file and command line flags.
+ * <p>
+ * {@code java ... Headless [--config=cowin.properties] [--key=value ...] [Runner|Runner2]}
+ * <p>
+ * File entries and flags become system properties before the runner is loaded, so every -D option
+ * can be set there. Keys without a dot are startup answers, {@code --mobile=9999999999} is
+ * -Dcowin.mobile (see {@link Prompts}). Flags win over the file, -D options given to the JVM win
+ * over both. Headless mode is on unless -Dheadless=false, captchas then go through the
+ * {@link InputProvider} instead of a window. Example config:
+ * <pre>
+ * mobile=9999999999
+ * district=294
+ * beneficiaries=all
+ * vaccine=any
+ * fee=Free
+ * input.provider=socket
+ * watch.pincodes=560037,560038
+ * </pre>
+ */
+public class Headless {
+
+  public static void main(String[] args) throws Exception {
+    Properties config = new Properties();
+    String client = "Runner2";
+    for (String arg : args) {
+      if (arg.startsWith("--config=")) {
+        try (InputStream in = new FileInputStream(arg.substring("--config=".length()))) {
+          config.load(in);
+        }
+      }
+    }
+    for (String arg : args) {
+      if (arg.startsWith("--config=")) {
+        continue;
+      }
+      if (arg.startsWith("--") && arg.contains("=")) {
+        int eq = arg.indexOf('=');
+        config.setProperty(arg.substring(2, eq), arg.substring(eq + 1));
+      } else {
+        client = arg;
+      }
+    }
+    apply(config);
+    if (System.getProperty("headless") == null) {
+      System.setProperty("headless", "true");
+    }
+
+    Method main = Class.forName(client).getMethod("main", String[].class);
+    main.invoke(null, (Object) new String[0]);
+  }
+
+  static void apply(Properties config) {
+    for (String key : config.stringPropertyNames()) {
+      String property = key.contains(".") ? key : "cowin." + key;
+      if (System.getProperty(property) == null) {
+        System.setProperty(property, config.getProperty(key).trim());
+      }
+    }
+  }
+}
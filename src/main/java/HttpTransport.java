@@ -0,0 +1,120 @@
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+
+/**
+ * Shared keep-alive HTTP client for all CoWIN API calls.
+ * <p>
+ * One pooled client is created per JVM so that slot polls, captcha fetches and booking
+ * requests reuse already established TLS connections instead of handshaking on every call.
+ * Limits and timeouts can be tuned with system properties (-Dhttp.maxTotal=20 etc).
+ */
+public class HttpTransport {
+
+  static final int MAX_TOTAL = Integer.getInteger("http.maxTotal", 20);
+  static final int MAX_PER_ROUTE = Integer.getInteger("http.maxPerRoute", 10);
+  static final int API_MAX_PER_ROUTE = Integer.getInteger("http.apiMaxPerRoute", MAX_TOTAL);
+  static final long CONNECT_TIMEOUT_MS = Long.getLong("http.connectTimeoutMs", 3000);
+  static final long RESPONSE_TIMEOUT_MS = Long.getLong("http.responseTimeoutMs", 10000);
+  static final long POOL_TIMEOUT_MS = Long.getLong("http.poolTimeoutMs", 2000);
+  static final long KEEP_ALIVE_MS = Long.getLong("http.keepAliveMs", 60000);
+  static final long IDLE_EVICT_MS = Long.getLong("http.idleEvictMs", 30000);
+
+  private static final PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+      .setMaxConnTotal(MAX_TOTAL)
+      .setMaxConnPerRoute(MAX_PER_ROUTE)
+      .setDefaultSocketConfig(SocketConfig.custom()
+          .setSoTimeout(Timeout.ofMilliseconds(RESPONSE_TIMEOUT_MS))
+          .setSoKeepAlive(true)
+          .setTcpNoDelay(true)
+          .build())
+      .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+      .build();
+
+  private static final CloseableHttpClient client = HttpClients.custom()
+      .setConnectionManager(connectionManager)
+      .setDefaultRequestConfig(RequestConfig.custom()
+          .setConnectTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT_MS))
+          .setResponseTimeout(Timeout.ofMilliseconds(RESPONSE_TIMEOUT_MS))
+          .setConnectionRequestTimeout(Timeout.ofMilliseconds(POOL_TIMEOUT_MS))
+          .setConnectionKeepAlive(TimeValue.ofMilliseconds(KEEP_ALIVE_MS))
+          .build())
+      .evictExpiredConnections()
+      .evictIdleConnections(TimeValue.ofMilliseconds(IDLE_EVICT_MS))
+      .build();
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(HttpTransport::close, "http-transport-shutdown"));
+  }
+
+  public static CloseableHttpClient client() {
+    return client;
+  }
+
+  /**
+   * Executes a request on the shared client once the {@link RateLimiter} lets it through,
+   * and reports the status code back to it and the call to {@link ApiMetrics}.
+   */
+  public static CloseableHttpResponse execute(ClassicHttpRequest request) throws IOException {
+    RateLimiter.Priority priority = RateLimiter.priorityOf(request.getRequestUri());
+    try {
+      RateLimiter.get().acquire(priority);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for rate limit");
+    }
+    EndpointStats stats = ApiMetrics.endpoint(request.getRequestUri());
+    long start = System.nanoTime();
+    CloseableHttpResponse response;
+    try {
+      response = client.execute(request);
+    } catch (IOException e) {
+      if (stats != null) {
+        stats.onError();
+      }
+      throw e;
+    }
+    RateLimiter.get().onResponse(priority, response.getCode());
+    if (stats != null) {
+      stats.onResponse(response.getCode(), (System.nanoTime() - start) / 1000);
+      HttpEntity entity = response.getEntity();
+      if (entity != null) {
+        response.setEntity(new ApiMetrics.MeteredEntity(entity, stats));
+      }
+    }
+    return response;
+  }
+
+  /**
+   * Raises the per-route connection limit for the given base url (the API host gets most of the pool).
+   */
+  public static void registerHost(String baseUrl) {
+    URI uri = URI.create(baseUrl);
+    boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+    int port = uri.getPort() > 0 ? uri.getPort() : (secure ? 443 : 80);
+    HttpHost host = new HttpHost(uri.getScheme(), uri.getHost(), port);
+    connectionManager.setMaxPerRoute(new HttpRoute(host, null, secure), API_MAX_PER_ROUTE);
+  }
+
+  public static void close() {
+    try {
+      client.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,149 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Where typed input (OTP, captcha and startup answers that are not configured) comes from, picked
+ * with -Dinput.provider:
+ * <ul>
+ * <li>stdin (default): one line from the console</li>
+ * <li>socket: the first line sent to 127.0.0.1:-Dinput.port (default 7777), the connection gets
+ * the prompt first, e.g. {@code echo 123456 | nc localhost 7777}</li>
+ * <li>file: the prompt is written to -Dinput.dir (default input) as {@code <kind>.prompt} and the
+ * answer read from {@code <kind>.txt} there, e.g. {@code echo 123456 > input/otp.txt}</li>
+ * </ul>
+ * Captcha images are written as {@code captcha.png} (into the input dir for file drops) so they
+ * can be read without a display.
+ */
+public interface InputProvider {
+
+  /**
+   * Blocks until an answer for {@code kind} (otp, captcha, mobile, ...) arrives.
+   *
+   * @param image captcha to show, or null
+   */
+  String read(String kind, String prompt, BufferedImage image) throws IOException;
+
+  static InputProvider fromProperties() {
+    String provider = System.getProperty("input.provider", "stdin");
+    switch (provider) {
+      case "stdin":
+        return new Stdin();
+      case "socket":
+        return new SocketInput(Integer.getInteger("input.port", 7777));
+      case "file":
+        return new FileDrop(new File(System.getProperty("input.dir", "input")));
+      default:
+        throw new IllegalArgumentException("Unknown input.provider: " + provider);
+    }
+  }
+
+  static String withImage(String prompt, BufferedImage image, File file) throws IOException {
+    if (image == null) {
+      return prompt;
+    }
+    ImageIO.write(image, "png", file);
+    return prompt + " (" + file.getAbsolutePath() + ")";
+  }
+
+  class Stdin implements InputProvider {
+    // one reader for all prompts, several Scanners on System.in would steal each other's buffered input
+    private BufferedReader reader;
+
+    @Override
+    public synchronized String read(String kind, String prompt, BufferedImage image) throws IOException {
+      System.out.println(withImage(prompt, image, new File("captcha.png")));
+      if (reader == null) {
+        reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+      }
+      while (true) {
+        String line = reader.readLine();
+        if (line == null) {
+          throw new EOFException("No input left for " + kind);
+        }
+        if (!line.trim().isEmpty()) {
+          return line.trim();
+        }
+      }
+    }
+  }
+
+  class SocketInput implements InputProvider {
+    private final int port;
+    private ServerSocket server;
+
+    public SocketInput(int port) {
+      this.port = port;
+    }
+
+    @Override
+    public synchronized String read(String kind, String prompt, BufferedImage image) throws IOException {
+      if (server == null) {
+        // local only, answers are OTPs
+        server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+      }
+      prompt = withImage(prompt, image, new File("captcha.png"));
+      System.out.println(prompt + " [waiting for " + kind + " on 127.0.0.1:" + server.getLocalPort() + "]");
+      while (true) {
+        try (Socket client = server.accept()) {
+          OutputStream out = client.getOutputStream();
+          out.write((prompt + "\n").getBytes(StandardCharsets.UTF_8));
+          out.flush();
+          String line = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8)).readLine();
+          if (line != null && !line.trim().isEmpty()) {
+            return line.trim();
+          }
+        }
+      }
+    }
+  }
+
+  class FileDrop implements InputProvider {
+    static final long POLL_MS = 100;
+
+    private final File dir;
+
+    public FileDrop(File dir) {
+      this.dir = dir;
+    }
+
+    @Override
+    public synchronized String read(String kind, String prompt, BufferedImage image) throws IOException {
+      dir.mkdirs();
+      File answer = new File(dir, kind + ".txt");
+      File request = new File(dir, kind + ".prompt");
+      // an answer left from an earlier prompt is stale
+      answer.delete();
+      prompt = withImage(prompt, image, new File(dir, kind + ".png"));
+      Files.write(request.toPath(), (prompt + "\n").getBytes(StandardCharsets.UTF_8));
+      System.out.println(prompt + " [waiting for " + answer + "]");
+      try {
+        while (true) {
+          if (answer.length() > 0) {
+            String text = new String(Files.readAllBytes(answer.toPath()), StandardCharsets.UTF_8).trim();
+            answer.delete();
+            if (!text.isEmpty()) {
+              request.delete();
+              return text;
+            }
+          }
+          Thread.sleep(POLL_MS);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for " + answer);
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of durations in microseconds.
+ * <p>
+ * Buckets are log-linear, 8 per power of two (about 12% resolution over the whole range), so
+ * recording is a bucket index computed from the leading zeros plus a few uncontended atomic
+ * adds, and percentiles are read without stopping writers.
+ */
+public class LatencyHistogram {
+
+  static final int SUB_BITS = 3;
+  static final int SUB = 1 << SUB_BITS;
+  static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public void record(long micros) {
+    if (micros < 0) {
+      micros = 0;
+    }
+    counts.incrementAndGet(bucket(micros));
+    count.increment();
+    sum.add(micros);
+    max.accumulate(micros);
+  }
+
+  public long count() {
+    return count.sum();
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  public double mean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) sum.sum() / n;
+  }
+
+  /**
+   * @param q quantile between 0 and 1
+   * @return the middle of the bucket holding the quantile, never more than the max
+   */
+  public long percentile(double q) {
+    long n = count.sum();
+    if (n == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(q * n));
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += counts.get(b);
+      if (seen >= rank) {
+        long low = lowerBound(b);
+        long high = b + 1 < BUCKETS ? lowerBound(b + 1) : Long.MAX_VALUE;
+        return Math.min(low + (high - low) / 2, max.get());
+      }
+    }
+    return max.get();
+  }
+
+  public void reset() {
+    for (int b = 0; b < BUCKETS; b++) {
+      counts.set(b, 0);
+    }
+    count.reset();
+    sum.reset();
+    max.reset();
+  }
+
+  static int bucket(long value) {
+    if (value < SUB) {
+      return (int) value;
+    }
+    int exp = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB - 1);
+    return (exp - SUB_BITS + 1) * SUB + sub;
+  }
+
+  static long lowerBound(int bucket) {
+    if (bucket < SUB) {
+      return bucket;
+    }
+    int exp = bucket / SUB + SUB_BITS - 1;
+    return (long) (SUB + bucket % SUB) << (exp - SUB_BITS);
+  }
+}
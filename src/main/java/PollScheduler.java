@@ -0,0 +1,210 @@
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the query (watched target and date) to poll next and the poll pace, from where and when
+ * capacity was released before.
+ * <p>
+ * A release is a poll that found sessions opened or grown since the previous poll of the same
+ * query. It adds to a decaying heat (half life -Dschedule.halfLifeHours, default 72) of the query
+ * and of its time of day slot (-Dschedule.slotMin, default 15 minutes). Queries are picked by
+ * smooth weighted round robin with weight 1 + -Dschedule.boost (default 4) times their heat
+ * relative to the hottest query, so cold ones are still polled, only less often. The
+ * {@link RateLimiter} pace follows the heat of the current and the next time slot between
+ * -Dschedule.minPace and -Dschedule.maxPace (0.5 and 2): budget saved in cold windows is spent in
+ * hot ones without going over the API limit. Heat is kept across runs in -Dschedule.file
+ * (default poll-stats.json).
+ */
+public class PollScheduler {
+
+  static final int SLOT_MINUTES = Integer.getInteger("schedule.slotMin", 15);
+  static final long HALF_LIFE_MS = TimeUnit.HOURS.toMillis(Long.getLong("schedule.halfLifeHours", 72));
+  static final double BOOST = Double.parseDouble(System.getProperty("schedule.boost", "4"));
+  static final double MIN_PACE = Double.parseDouble(System.getProperty("schedule.minPace", "0.5"));
+  static final double MAX_PACE = Double.parseDouble(System.getProperty("schedule.maxPace", "2"));
+  static final int SLOTS = (int) TimeUnit.DAYS.toMinutes(1) / SLOT_MINUTES;
+
+  private static final AsyncLog log = AsyncLog.get(PollScheduler.class);
+
+  // the heat table is a plain Map<String, double[]>, it needs none of Runner.jsonMapper's
+  // settings, and referencing Runner would run its static setup inside Runner2
+  private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+  public static final class Query {
+    public final Watcher.Target target;
+    public final int dayOffset;
+    final String key;
+    double current;
+
+    Query(Watcher.Target target, int dayOffset) {
+      this.target = target;
+      this.dayOffset = dayOffset;
+      this.key = target + " +" + dayOffset + "d";
+    }
+
+    /**
+     * @return today plus the day offset of this query
+     */
+    public String date(DateFormat format) {
+      Calendar calendar = Calendar.getInstance();
+      calendar.add(Calendar.DAY_OF_MONTH, dayOffset);
+      return format.format(calendar.getTime());
+    }
+
+    @Override
+    public String toString() {
+      return key;
+    }
+  }
+
+  private final List<Query> queries = new ArrayList<>();
+  // query key or time slot ("HH:mm") -> {heat, time in ms it was decayed to}
+  private final Map<String, double[]> heat = new HashMap<>();
+  private final RateLimiter rateLimiter;
+  private long picks;
+  private double pace = 1;
+
+  public PollScheduler(List<Watcher.Target> targets, int[] dayOffsets, RateLimiter rateLimiter) {
+    for (int dayOffset : dayOffsets) {
+      for (Watcher.Target target : targets) {
+        queries.add(new Query(target, dayOffset));
+      }
+    }
+    this.rateLimiter = rateLimiter;
+  }
+
+  /**
+   * Scheduler for the watched targets on the shared {@link RateLimiter}, with the heat of previous
+   * runs loaded and saved again on exit.
+   */
+  public static PollScheduler forWatcher(Watcher watcher, int[] dayOffsets) {
+    PollScheduler scheduler = new PollScheduler(watcher.targets(), dayOffsets, RateLimiter.get());
+    File file = new File(System.getProperty("schedule.file", "poll-stats.json"));
+    if (file.exists()) {
+      try {
+        scheduler.heat.putAll(jsonMapper.readValue(file, new TypeReference<Map<String, double[]>>() {
+        }));
+      } catch (IOException e) {
+        log.warn("Could not read poll stats {}: {}", file, e.getMessage());
+      }
+    }
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        scheduler.save(file);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }, "poll-stats"));
+    return scheduler;
+  }
+
+  public synchronized void save(File file) throws IOException {
+    jsonMapper.writeValue(file, heat);
+  }
+
+  /**
+   * @return the query to poll now, also sets the pace of the rate limiter for the current time slot
+   */
+  public synchronized Query next() {
+    long now = System.currentTimeMillis();
+    double hottest = 0;
+    for (Query query : queries) {
+      hottest = Math.max(hottest, heat(query.key, now));
+    }
+    double total = 0;
+    Query best = null;
+    for (Query query : queries) {
+      double weight = hottest > 0 ? 1 + BOOST * heat(query.key, now) / hottest : 1;
+      query.current += weight;
+      total += weight;
+      if (best == null || query.current > best.current) {
+        best = query;
+      }
+    }
+    best.current -= total;
+    picks++;
+
+    double paceNow = pace(now);
+    if (paceNow != pace) {
+      log.info("Poll pace {} -> {} at {}", pace, paceNow, slotKey(slot(now)));
+      pace = paceNow;
+      rateLimiter.pace(pace);
+    }
+    return best;
+  }
+
+  /**
+   * @return number of queries picked so far divided by the number of queries, a rough poll cycle
+   */
+  public synchronized long round() {
+    return picks / queries.size();
+  }
+
+  /**
+   * Records a poll of {@code query} that found released capacity.
+   */
+  public synchronized void onRelease(Query query, int sessions) {
+    long now = System.currentTimeMillis();
+    add(query.key, now);
+    add(slotKey(slot(now)), now);
+    log.info("Release of {} sessions for {} at {}", sessions, query.key, slotKey(slot(now)));
+  }
+
+  private double pace(long now) {
+    double sum = 0;
+    for (int i = 0; i < SLOTS; i++) {
+      sum += heat(slotKey(i), now);
+    }
+    if (sum == 0) {
+      return 1;
+    }
+    // the next slot counts too, so polling speeds up before a usual release time
+    int slot = slot(now);
+    double current = Math.max(heat(slotKey(slot), now), heat(slotKey((slot + 1) % SLOTS), now));
+    // in quarter steps, the heat decays a little between any two polls
+    return Math.max(MIN_PACE, Math.min(MAX_PACE, Math.round(current * SLOTS / sum * 4) / 4.0));
+  }
+
+  private double heat(String key, long now) {
+    double[] value = heat.get(key);
+    if (value == null) {
+      return 0;
+    }
+    return value[0] * Math.pow(0.5, (now - value[1]) / HALF_LIFE_MS);
+  }
+
+  private void add(String key, long now) {
+    heat.put(key, new double[]{heat(key, now) + 1, now});
+  }
+
+  static int slot(long millis) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(millis);
+    return (calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE)) / SLOT_MINUTES;
+  }
+
+  static String slotKey(int slot) {
+    int minutes = slot * SLOT_MINUTES;
+    return String.format("%02d:%02d", minutes / 60, minutes % 60);
+  }
+
+  @Override
+  public synchronized String toString() {
+    long now = System.currentTimeMillis();
+    StringBuilder sb = new StringBuilder();
+    for (Query query : queries) {
+      sb.append(sb.length() == 0 ? "" : ", ").append(query).append(String.format(" (%.2f)", heat(query.key, now)));
+    }
+    return "PollScheduler(pace=" + pace + ", queries=[" + sb + "])";
+  }
+}
@@ -0,0 +1,90 @@
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Startup answers, OTP and captcha input of the runners.
+ * <p>
+ * Startup answers can be configured (e.g. in a {@link Headless} config file) with -Dcowin.mobile,
+ * -Dcowin.district, -Dcowin.beneficiaries (all, or reference ids / names), -Dcowin.vaccine
+ * (any, COVAXIN, COVISHIELD) and -Dcowin.fee (any, Free, Paid). Everything else is asked through
+ * the {@link InputProvider}. Captchas are typed into {@link CaptchaWindow}, unless running
+ * headless (-Dheadless=true or no display), then the input provider gets them too.
+ */
+public final class Prompts {
+
+  static final boolean HEADLESS = Boolean.getBoolean("headless") || GraphicsEnvironment.isHeadless();
+
+  private static final InputProvider provider = InputProvider.fromProperties();
+
+  private Prompts() {
+  }
+
+  /**
+   * @return the configured answer for {@code key} (-Dcowin.&lt;key&gt;), or null
+   */
+  public static String config(String key) {
+    String value = System.getProperty("cowin." + key);
+    return value == null || value.trim().isEmpty() ? null : value.trim();
+  }
+
+  /**
+   * @return the configured answer for {@code key}, else the one typed for {@code prompt}
+   */
+  public static String ask(String key, String prompt) throws IOException {
+    String configured = config(key);
+    if (configured != null) {
+      System.out.println(prompt + " " + configured + " (configured)");
+      return configured;
+    }
+    return provider.read(key, prompt, null);
+  }
+
+  public static String otp() throws IOException {
+    return provider.read("otp", "Enter OTP:", null);
+  }
+
+  /**
+   * @param suggestion decoded text to check, pre-filled in the captcha window, or null
+   */
+  public static String captcha(BufferedImage image, String suggestion) throws IOException {
+    if (!HEADLESS) {
+      return CaptchaWindow.createWindow(image, suggestion);
+    }
+    String text = provider.read("captcha", suggestion == null ? "Enter captcha:"
+        : "Enter captcha (decoded as " + suggestion + "):", image);
+    System.out.println("User captcha Input: " + text);
+    return text;
+  }
+
+  /**
+   * @return whether the beneficiary is one of -Dcowin.beneficiaries, or asked y/n if that is not set
+   */
+  public static boolean includes(String referenceId, String name) throws IOException {
+    String configured = config("beneficiaries");
+    if (configured == null) {
+      return provider.read("beneficiary", name + "\nDo you want to include it (y/n):", null).equalsIgnoreCase("y");
+    }
+    for (String picked : configured.split(",")) {
+      picked = picked.trim();
+      if (picked.equalsIgnoreCase("all") || picked.equals(referenceId) || picked.equalsIgnoreCase(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Maps a numbered answer (0 = any, 1 = first option, ...) or an option name to the option.
+   *
+   * @return the option, or null for any
+   */
+  public static String choice(String answer, String... options) {
+    for (int i = 0; i < options.length; i++) {
+      if (answer.equals(String.valueOf(i + 1)) || answer.equalsIgnoreCase(options[i])) {
+        return options[i];
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,161 @@
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket for the CoWIN limit of 100 API calls per 5 minutes per IP.
+ * <p>
+ * Polls are spaced evenly so that they use the budget minus a reserve, the reserve is kept for
+ * captcha/booking and OTP calls which are never delayed by poll spacing. A 403/429 pauses calls
+ * of the same priority with an exponentially growing back-off that resets on their next
+ * successful response; a throttled poll leaves the reserve and the booking calls alone.
+ * The poll spacing can be sped up or slowed down with {@link #pace}, the times of the last calls
+ * are kept so that a faster pace never puts more than the limit into any window.
+ * Tunable with -Dratelimit.calls, -Dratelimit.windowSec and -Dratelimit.reserve.
+ */
+public class RateLimiter {
+
+  private static final AsyncLog log = AsyncLog.get(RateLimiter.class);
+
+  public enum Priority {
+    POLL, AUTH, BOOKING
+  }
+
+  static final int CALLS = Integer.getInteger("ratelimit.calls", 100);
+  static final long WINDOW_SEC = Long.getLong("ratelimit.windowSec", 300);
+  static final int RESERVE = Integer.getInteger("ratelimit.reserve", 10);
+  static final long MIN_BACKOFF_MS = 10_000;
+  static final long MAX_BACKOFF_MS = TimeUnit.SECONDS.toMillis(WINDOW_SEC);
+
+  private static final RateLimiter instance = new RateLimiter(CALLS, WINDOW_SEC, RESERVE);
+
+  public static RateLimiter get() {
+    return instance;
+  }
+
+  private final int capacity;
+  private final int reserve;
+  private final double tokensPerNano;
+  private final long windowNanos;
+  private final long basePollIntervalNanos;
+  private long pollIntervalNanos;
+  // times of the last calls, oldest at next
+  private final long[] calls;
+  private int next;
+
+  private double tokens;
+  private long lastRefill = System.nanoTime();
+  private long nextPollAt = lastRefill;
+  // per Priority
+  private final long[] blockedUntil = new long[Priority.values().length];
+  private final long[] backoffMs = new long[Priority.values().length];
+
+  public RateLimiter(int calls, long windowSec, int reserve) {
+    this.capacity = calls;
+    this.reserve = Math.min(reserve, calls - 1);
+    this.windowNanos = TimeUnit.SECONDS.toNanos(windowSec);
+    this.tokensPerNano = (double) calls / windowNanos;
+    this.basePollIntervalNanos = windowNanos / (calls - this.reserve);
+    this.pollIntervalNanos = basePollIntervalNanos;
+    this.tokens = calls;
+    this.calls = new long[calls];
+    Arrays.fill(this.calls, lastRefill - windowNanos);
+    Arrays.fill(this.blockedUntil, lastRefill);
+  }
+
+  public static Priority priorityOf(String url) {
+    if (url.contains("/auth/getRecaptcha") || url.contains("/appointment/schedule") || url.contains("/appointment/reschedule")) {
+      return Priority.BOOKING;
+    }
+    if (url.contains("/auth/")) {
+      return Priority.AUTH;
+    }
+    return Priority.POLL;
+  }
+
+  /**
+   * Blocks until a call of the given priority fits in the budget and takes one token.
+   */
+  public synchronized void acquire(Priority priority) throws InterruptedException {
+    while (true) {
+      long now = System.nanoTime();
+      refill(now);
+      long waitNanos = blockedUntil[priority.ordinal()] - now;
+      if (waitNanos <= 0) {
+        if (priority == Priority.POLL) {
+          waitNanos = Math.max(Math.max(nextPollAt - now, tokensNeeded(reserve + 1)), windowWait(capacity - reserve, now));
+          if (waitNanos <= 0) {
+            nextPollAt = now + pollIntervalNanos;
+          }
+        } else {
+          waitNanos = Math.max(tokensNeeded(1), windowWait(capacity, now));
+        }
+      }
+      if (waitNanos <= 0) {
+        tokens -= 1;
+        calls[next] = now;
+        next = (next + 1) % capacity;
+        return;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+    }
+  }
+
+  /**
+   * Feeds the response status of a call back, 403/429 trigger the back-off of its priority.
+   */
+  public synchronized void onResponse(Priority priority, int statusCode) {
+    int p = priority.ordinal();
+    if (statusCode == 403 || statusCode == 429) {
+      backoffMs[p] = backoffMs[p] == 0 ? MIN_BACKOFF_MS : Math.min(backoffMs[p] * 2, MAX_BACKOFF_MS);
+      blockedUntil[p] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs[p]);
+      // the server thinks we are over budget, stop assuming otherwise; after a throttled poll only
+      // the reserve is left, so a slot found right before can still be booked
+      tokens = priority == Priority.POLL ? Math.min(tokens, reserve) : 0;
+      log.warn("Rate limited ({}) on {}, backing off for {} ms", statusCode, priority, backoffMs[p]);
+    } else if (statusCode < 400 && backoffMs[p] != 0) {
+      backoffMs[p] = 0;
+      blockedUntil[p] = System.nanoTime();
+      notifyAll();
+    }
+  }
+
+  /**
+   * Scales the poll rate, 2 polls twice as often as the even spacing and 0.5 half as often.
+   */
+  public synchronized void pace(double factor) {
+    long interval = (long) (basePollIntervalNanos / factor);
+    if (interval < pollIntervalNanos) {
+      nextPollAt -= pollIntervalNanos - interval;
+      notifyAll();
+    }
+    pollIntervalNanos = interval;
+  }
+
+  public synchronized long pollIntervalMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(pollIntervalNanos);
+  }
+
+  public synchronized double available() {
+    refill(System.nanoTime());
+    return tokens;
+  }
+
+  private long tokensNeeded(int needed) {
+    if (tokens >= needed) {
+      return 0;
+    }
+    return (long) Math.ceil((needed - tokens) / tokensPerNano);
+  }
+
+  /**
+   * Time until a call is possible without more than {@code limit} calls in the last window.
+   */
+  private long windowWait(int limit, long now) {
+    return calls[(next + capacity - limit) % capacity] + windowNanos - now;
+  }
+
+  private void refill(long now) {
+    tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+    lastRefill = now;
+  }
+}
@@ -1,4 +1,3 @@
-import com.fasterxml.jackson.annotation.JsonAlias;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
@@ -8,24 +7,26 @@ import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.Method;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.entity.StringEntity;
 
 import javax.sound.sampled.LineUnavailableException;
-import java.io.File;
-import java.io.FileWriter;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
@@ -35,41 +36,6 @@ import java.util.regex.Pattern;
  */
 
 
-@ToString
-class Session {
-  public String session_id;
-  public String date;
-  public int available_capacity;
-  public int min_age_limit;
-  public String vaccine;
-  public List<String> slots;
-}
-
-@ToString
-class VaccineFee {
-  public String vaccine;
-  public String fee;
-}
-
-@ToString
-class Center {
-  public int center_id;
-  public String name;
-  public String address;
-  public String state_name;
-  public String district_name;
-  public String block_name;
-  public int pincode;
-  public int lat;
-  @JsonAlias({"long"})
-  public int _long;
-  public String from;
-  public String to;
-  public String fee_type;
-  public List<VaccineFee> vaccine_fees;
-  public List<Session> sessions;
-}
-
 @ToString
 class Root {
   public List<Center> centers;
@@ -115,19 +81,25 @@ class BeneficiaryList {
 
 public class Runner {
 
+  // first, sets up slf4j-simple before anything else asks for a logger
+  private static final AsyncLog log = AsyncLog.get(Runner.class);
+
   public static final ObjectMapper jsonMapper = new ObjectMapper();
 
   // These APIs are subject to a rate limit of 100 API calls per 5 minutes per IP.
-  private static final String BASE_URL = "https://cdn-api.co-vin.in/api";
+  // -Dcowin.baseUrl points the client at another server, e.g. MockCowinServer
+  private static final String BASE_URL = System.getProperty("cowin.baseUrl", "https://cdn-api.co-vin.in/api");
   private static final String authentication_URL = "/v2/auth/generateMobileOTP";
   private static final String otp_validation_URL = "/v2/auth/validateMobileOtp";
   private static final String beneficiaries_URL = "/v2/appointment/beneficiaries";
   private static final String findByPin_URL = "/v2/appointment/sessions/public/findByPin";
   private static final String findByDistrict_URL = "/v2/appointment/sessions/calendarByDistrict";
+  private static final String calendarByPin_URL = "/v2/appointment/sessions/calendarByPin";
   private static final String appointment_URL = "/v2/appointment/schedule";
   private static final String captcha_URL = "/v2/auth/getRecaptcha";
 
-  private static final File tokenFile = new File("token.txt");
+  // token, beneficiaries and preferences of the last run, replaces token.txt
+  private static final SessionStore session = SessionStore.load();
 
   static final String PATTERN = "dd-MM-yyyy";
   static final SimpleDateFormat dateFormat = new SimpleDateFormat();
@@ -152,42 +124,38 @@ public class Runner {
 
   public static Map<String, Object> getResponse(String url, Map<String, Object> input, Map<String, String> header, Method method) throws IOException {
 //    System.out.println("URL: " + url);
-    CloseableHttpResponse response;
-    try (CloseableHttpClient httpclient = HttpClients.createDefault()) {
-      HttpPost httppost = new HttpPost(url);
-      HttpGet httpget = null;
-      if (method == Method.GET) {
-        httpget = new HttpGet(url);
-      }
+    HttpUriRequestBase request = method == Method.GET ? new HttpGet(url) : new HttpPost(url);
 
-//      if(input != null)
-      httppost.setHeader("Content-type", ContentType.APPLICATION_JSON);
-      if (httpget != null)
-        httpget.setHeader("Content-type", ContentType.APPLICATION_JSON);
+    request.setHeader("Content-type", ContentType.APPLICATION_JSON);
+    if (header != null) {
+      header.forEach(request::setHeader);
+    }
 
-      if (header != null) {
-        header.forEach(httppost::setHeader);
-        if (httpget != null) {
-          header.forEach(httpget::setHeader);
-        }
-      }
+    if (input != null && method != Method.GET) {
+      String json = jsonMapper.writeValueAsString(input);
+//      System.out.println("Request: " + json);
+      request.setEntity(new StringEntity(json));
+    }
+    return readResponse(request, url);
+  }
 
-      if (input != null && method != Method.GET) {
-        String json = jsonMapper.writeValueAsString(input);
-//        System.out.println("Request: " + json);
-        httppost.setEntity(new StringEntity(json));
-      }
+  /**
+   * POST of a body serialized ahead of time, see {@link BookingTemplate}.
+   */
+  public static Map<String, Object> getResponse(String url, byte[] body, Header[] headers) throws IOException {
+    HttpPost request = new HttpPost(url);
+    request.setHeaders(headers);
+    request.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+    return readResponse(request, url);
+  }
 
-      if (method == Method.GET) {
-//        System.out.println(header);
-        response = httpclient.execute(httpget);
-      } else {
-        response = httpclient.execute(httppost);
-      }
+  private static Map<String, Object> readResponse(HttpUriRequestBase request, String url) throws IOException {
+    // shared pooled client (rate limited): closing the response hands the connection back for reuse
+    try (CloseableHttpResponse response = HttpTransport.execute(request)) {
       HttpEntity entity = response.getEntity();
 
       if (response.getCode() != 200)
-        System.out.println("URL: " + url + ", response Code: " + response.getCode());
+        log.warn("URL: {}, response Code: {}", url, response.getCode());
 
       if (entity != null) {
         try (InputStream instream = entity.getContent()) {
@@ -213,6 +181,48 @@ public class Runner {
     return null;
   }
 
+  /**
+   * GET decoded directly from the entity stream into {@code type}, without an intermediate map or body string.
+   */
+  public static <T> ApiResponse<T> getResponse(String url, Map<String, String> header, Class<T> type) throws IOException {
+    return getResponse(url, header, in -> jsonMapper.readValue(in, type));
+  }
+
+  /**
+   * GET whose 200 body is handed to {@code reader} as a stream, e.g. for {@link SlotMatcher}.
+   */
+  public static <T> ApiResponse<T> getResponse(String url, Map<String, String> header, ApiResponse.BodyReader<T> reader) throws IOException {
+    HttpGet request = new HttpGet(url);
+    request.setHeader("Content-type", ContentType.APPLICATION_JSON);
+    if (header != null) {
+      header.forEach(request::setHeader);
+    }
+
+    try (CloseableHttpResponse response = HttpTransport.execute(request)) {
+      HttpEntity entity = response.getEntity();
+      int code = response.getCode();
+      if (code != 200)
+        log.warn("URL: {}, response Code: {}", url, code);
+
+      if (entity == null) {
+        return new ApiResponse<>(code, null, null);
+      }
+      try (InputStream instream = entity.getContent()) {
+        if (code != 200) {
+          return new ApiResponse<>(code, null, new String(IOUtils.toByteArray(instream)));
+        }
+        TraceEvents.Parse parse = new TraceEvents.Parse();
+        parse.begin();
+        T body = ApiMetrics.parse(url, reader, instream);
+        parse.url = url;
+        parse.commit();
+        return new ApiResponse<>(code, body, null);
+      } finally {
+        EntityUtils.consume(entity);
+      }
+    }
+  }
+
   public static final String pattern = "(<path d=)(.*?)(fill=\\\"none\\\"/>)";
   public static final Pattern search = Pattern.compile(pattern);
 //  public static String getCaptcha(Map<String, Object> input){
@@ -227,8 +237,14 @@ public class Runner {
     input.put("mobile", mobile);
     input.put("secret", "U2FsdGVkX1+z/4Nr9nta+2DrVJSv7KS6VoQUSQ1ZXYDx/CJUkWxFYG6P3iM/VW+6jLQ9RDQVzp/RcZ8kbT41xw==");
 
+    if (readOld) {
+      String saved = session.validToken(mobile);
+      if (saved != null) {
+        return saved;
+      }
+    }
+
     String token = null;
-    Scanner sc = new Scanner(System.in);
 
     String txnIdOld = null;
     boolean isValid = false;
@@ -245,11 +261,10 @@ public class Runner {
 //        txnId = txnIdOld;
 //      }
 
-      System.out.println("Enter OTP :");
       // alert sound
       SoundUtils.alertSound(2);
 
-      String otp = sc.next();
+      String otp = Prompts.otp();
 
       String sha256hex = DigestUtils.sha256Hex(otp);
 
@@ -269,9 +284,7 @@ public class Runner {
       token = (String) getToken.get("token");
 
       if (token != null && !token.isEmpty()) {
-        FileWriter fileWriter = new FileWriter(tokenFile);
-        fileWriter.write(token);
-        fileWriter.close();
+        session.updateToken(mobile, token);
         isValid = true;
       }
     }
@@ -287,24 +300,17 @@ public class Runner {
       header.put(HttpHeaders.AUTHORIZATION, "Bearer " + token);
       header.put(HttpHeaders.USER_AGENT, "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_10_1) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/39.0.2171.95 Safari/537.36");
 
-      Map<String, Object> getToken = getResponse(BASE_URL + beneficiaries_URL, null, header, Method.GET);
+      // decoded straight into the typed list, a 401 has no body and renews the token below
+      ApiResponse<BeneficiaryList> getToken = getResponse(BASE_URL + beneficiaries_URL, header, BeneficiaryList.class);
 
-      if ((int) getToken.getOrDefault("status_code", 0) != 200) {
+      if (getToken.status_code != 200) {
         System.out.println(getToken);
       }
 
-      if (BENEFICIARIES.isEmpty()) {
-        String s = (String) getToken.get("_raw");
-        //ignore it
-        if (s == null || s.toLowerCase().contains("unauthenticated"))
-          continue;
-        Scanner sc = new Scanner(System.in);
-        BeneficiaryList beneficiaries = jsonMapper.readValue(s, BeneficiaryList.class);
-        beneficiaries.beneficiaries.forEach(beneficiary -> {
-          System.out.println(beneficiary.name);
-          System.out.println("Do you want to include it (y/n):");
-          String ans = sc.next();
-          if (ans.toLowerCase().equals("y")) {
+      if (BENEFICIARIES.isEmpty() && getToken.body != null) {
+        BeneficiaryList beneficiaries = getToken.body;
+        for (Beneficiary beneficiary : beneficiaries.beneficiaries) {
+          if (Prompts.includes(beneficiary.beneficiary_reference_id, beneficiary.name)) {
             System.out.println("Adding " + beneficiary.name);
             BENEFICIARIES.add(beneficiary.beneficiary_reference_id);
             int age = Calendar.getInstance().get(Calendar.YEAR) - Integer.parseInt(beneficiary.birth_year);
@@ -328,31 +334,20 @@ public class Runner {
               START_DATE = dateFormat.format(calendar.getTime());
             }
           }
-        });
+        }
 
         if (BENEFICIARIES.isEmpty()) {
           System.out.println("Need at least one BENEFICIARY");
           System.exit(0);
         }
         System.out.println("MIN AGE:" + MIN_AGE);
-        System.out.println("Vaccine preference (0 = any, 1 = COVAXIN, 2 = COVISHIELD): ");
-        int c = Integer.parseInt(sc.next());
-        if (c == 1) {
-          VACCINE = "COVAXIN";
-        } else if (c == 2) {
-          VACCINE = "COVISHIELD";
-        }
+        VACCINE = Prompts.choice(Prompts.ask("vaccine", "Vaccine preference (0 = any, 1 = COVAXIN, 2 = COVISHIELD): "),
+            "COVAXIN", "COVISHIELD");
 
-        System.out.println("Fee type preference (0 = any, 1 = Free, 2 = Paid): ");
-        c = Integer.parseInt(sc.next());
-        if (c == 1) {
-          fee_type = "Free";
-        } else if (c == 2) {
-          fee_type = "Paid";
-        }
+        fee_type = Prompts.choice(Prompts.ask("fee", "Fee type preference (0 = any, 1 = Free, 2 = Paid): "), "Free", "Paid");
       }
 
-      if (getToken != null && (int) getToken.getOrDefault("status_code", 0) == 200) {
+      if (getToken.status_code == 200) {
         isValid = true;
       } else {
         System.out.println("Generating new token");
@@ -362,161 +357,252 @@ public class Runner {
     return token;
   }
 
-  public static void main(String[] args) throws IOException, NoSuchAlgorithmException, InterruptedException, LineUnavailableException {
+  /**
+   * Takes beneficiaries and preferences from the session store instead of asking for them.
+   */
+  static void resume() {
+    System.out.println("Resuming " + session + ", start with -Dsession.reset=true to pick again");
+    mobile = session.mobile;
+    BENEFICIARIES.addAll(session.beneficiaries);
+    MIN_AGE = session.min_age;
+    DOSE = session.dose;
+    START_DATE = session.start_date;
+    VACCINE = session.vaccine;
+    fee_type = session.fee_type;
+  }
 
-    System.out.println("Searching for AGE: " + MIN_AGE + " in district_id: " + district_id);
-    if (tokenFile.createNewFile()) {
-      System.out.println("tokenFile File created: " + tokenFile.getName());
-    } else {
-      System.out.println("tokenFile File already exists.");
+  static void remember() {
+    synchronized (session) {
+      session.mobile = mobile;
+      session.beneficiaries = new ArrayList<>(BENEFICIARIES);
+      session.min_age = MIN_AGE;
+      session.dose = DOSE;
+      session.start_date = START_DATE;
+      session.vaccine = VACCINE;
+      session.fee_type = fee_type;
     }
+    session.save();
+  }
 
-    Scanner sc = new Scanner(System.in);
-
-    System.out.println("Enter phone number: ");
-    mobile = sc.next();
+  public static void main(String[] args) throws IOException, NoSuchAlgorithmException, InterruptedException, LineUnavailableException {
 
-    System.out.println("Do you want to change default district_id (Bangalore BBMP): " + district_id + " (y/n)");
-    String o = sc.next();
-    if (o.equalsIgnoreCase("y")) {
-      System.out.println("Enter new district_id: ");
-      district_id = Integer.parseInt(sc.next());
-      System.out.println("Updating district_id: " + district_id);
+    HttpTransport.registerHost(BASE_URL);
+    // warm captcha engines while we wait for user input and the first polls
+    WarmUp.start();
+    System.out.println("Searching for AGE: " + MIN_AGE + " in district_id: " + district_id);
+    // a configured mobile number other than the saved one starts over
+    String configuredMobile = Prompts.config("mobile");
+    boolean resumed = session.hasPreferences() && (configuredMobile == null || configuredMobile.equals(session.mobile));
+    if (resumed) {
+      resume();
+    } else {
+      mobile = Prompts.ask("mobile", "Enter phone number: ");
+
+      String configuredDistrict = Prompts.config("district");
+      if (configuredDistrict != null) {
+        district_id = Integer.parseInt(configuredDistrict);
+        System.out.println("Configured district_id: " + district_id);
+      } else if (Prompts.ask("change_district", "Do you want to change default district_id (Bangalore BBMP): " + district_id + " (y/n)").equalsIgnoreCase("y")) {
+        district_id = Integer.parseInt(Prompts.ask("district", "Enter new district_id: "));
+        System.out.println("Updating district_id: " + district_id);
+      }
     }
 
     String token = getToken(true);
     System.out.println("token: " + token);
 
-    Map<String, String> header = new HashMap<>();
+    // beneficiaries and preferences are picked once here, afterwards the token is only
+    // renewed shortly before its expiry or after a 401 instead of being re-checked every poll
+    if (!resumed) {
+      token = validateToken(token);
+      remember();
+    }
+    TokenManager tokenManager = new TokenManager(token, () -> getToken(false));
+
+    // shared with the booking threads
+    Map<String, String> header = new ConcurrentHashMap<>();
     header.put(HttpHeaders.AUTHORIZATION, "Bearer " + token);
 //    header.put("origin", "https://selfregistration.cowin.gov.in");
 //    header.put("referer", "https://selfregistration.cowin.gov.in/");
     header.put(HttpHeaders.USER_AGENT, "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_10_1) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/39.0.2171.95 Safari/537.36");
 
+    Map<String, String> finalHeader = header;
+    // the body is serialized up front, a match and the captcha are only appended
+    BookingTemplate template = BookingTemplate.schedule(Integer.parseInt(DOSE), BENEFICIARIES);
+    BookingEngine bookingEngine = new BookingEngine(
+        candidate -> prepareCaptcha(candidate, finalHeader, tokenManager),
+        Runner::readCaptcha,
+        (candidate, captcha, text) -> {
+          log.info("Captcha for {}: {}", candidate, text);
+          String authorization = finalHeader.get(HttpHeaders.AUTHORIZATION);
+          Map<String, Object> getAppointment = getResponse(BASE_URL + appointment_URL, BookingTemplate.body(candidate.payload, text),
+              template.headers(finalHeader));
+          log.info("Appointment status code: {}", getAppointment.get("status_code"));
+          tokenManager.onResponse(authorization, (int) getAppointment.getOrDefault("status_code", 0));
+          SvgCaptchaDecoder.shared().learnAccepted(captcha.svg, text, getAppointment);
+          return getAppointment;
+        },
+        getAppointment -> {
+          String appointment_id = (String) getAppointment.get("appointment_confirmation_no");
+          return appointment_id != null && !appointment_id.isEmpty();
+        });
+
+    // a resumed run keeps watching what it watched before the restart
+    Watcher watcher = Watcher.fromProperties(resumed ? session.watched() : Collections.emptyList(), district_id);
+    session.watch(watcher);
+    System.out.println("Watching " + watcher + ", each query repeats about every "
+        + watcher.revisitMillis(4) / 1000 + " s");
+
+    // previous response per query (target, date and vaccine)
+    Map<String, SessionSnapshot> snapshots = new HashMap<>();
+    // 4 weeks from today, polled more often where and when slots were released before
+    PollScheduler scheduler = PollScheduler.forWatcher(watcher, START_DATE != null ? new int[]{0} : new int[]{0, 7, 14, 21});
+    System.out.println(scheduler);
+    long round = -1;
     AtomicBoolean done = new AtomicBoolean(false);
     while (!done.get()) {
-      for (int i = 0; i < 4; i++) {
+      PollScheduler.Query query = scheduler.next();
+      if (scheduler.round() != round) {
+        round = scheduler.round();
+        watcher.newCycle();
+      }
+      Watcher.Target target = query.target;
+      String date1 = START_DATE != null ? START_DATE : query.date(dateFormat);
+      String current = tokenManager.current();
+      header.put(HttpHeaders.AUTHORIZATION, "Bearer " + current);
+
+      String urlPath = target.query(date1);
+      if (VACCINE != null && !VACCINE.isEmpty()) {
+        urlPath = urlPath + "&vaccine=" + VACCINE;
+      }
+      // matches are filtered while the response streams in and join the booking race right away
+      SlotMatcher matcher = new SlotMatcher(MIN_AGE, 2, 0, VACCINE, fee_type);
+      BookingEngine.Race race = bookingEngine.newRace();
+      SessionSnapshot snapshot = snapshots.computeIfAbsent(urlPath, k -> new SessionSnapshot());
+      snapshot.begin();
+      TraceEvents.Poll poll = new TraceEvents.Poll();
+      poll.begin();
+      long started = System.nanoTime();
+      ApiResponse<Integer> getSlot = getResponse(BASE_URL + (target.pincode ? calendarByPin_URL : findByDistrict_URL) + urlPath, header,
+          in -> matcher.matchCalendar(in, ApiMetrics.matches((center, session) -> {
+            // only new or grown capacity is worth a booking attempt, unchanged sessions were tried already
+            SessionSnapshot.Delta delta = snapshot.observe(session.session_id, session.available_capacity);
+            // the same session can come back from a district and a pincode query
+            if (!delta.bookable() || !watcher.claim(session.session_id)) {
+              return;
+            }
+            TraceEvents.Match match = new TraceEvents.Match();
+            match.sessionId = session.session_id;
+            match.centerId = center.center_id;
+            match.capacity = session.available_capacity;
+            match.delta = delta.name();
+            match.commit();
+            log.info("Slot available ({}): {} {}, {} {}, capacity {} on {}, slots {}", delta, session.session_id,
+                center.name, center.address, center.pincode, session.available_capacity, session.date, session.slots);
+            log.debug("{}", center);
+
+            session.slots.forEach(s1 -> race.submit(new BookingEngine.Candidate(center.center_id, session.session_id, s1,
+                template.payload(session.session_id, center.center_id, s1), center)));
+          })));
+      // one line per poll, the body itself only at debug level
+      log.info("Poll {} -> {}, {} matched in {} ms", urlPath, getSlot.status_code,
+          getSlot.body != null ? getSlot.body : 0, (System.nanoTime() - started) / 1_000_000);
+      if (getSlot.error != null) {
+        log.debug("Response: {}", getSlot.error);
+      }
+      poll.query = urlPath;
+      poll.status = getSlot.status_code;
+      poll.matched = getSlot.body != null ? getSlot.body : 0;
+      poll.commit();
+
+      if (getSlot.status_code == 401) {
+        tokenManager.invalidate(current);
+        continue;
+      }
 
-        token = validateToken(token);
+      //ignore it
+      if (getSlot.body == null)
+        continue;
+      int closed = snapshot.end();
+      if (closed > 0) {
+        log.info("{} sessions gone since the last poll of {}", closed, target);
+      }
+      if (snapshot.releases() > 0) {
+        scheduler.onRelease(query, snapshot.releases());
+      }
 
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_MONTH, 7 * i);
-        String date1 = dateFormat.format(calendar.getTime());
-        if (START_DATE != null) {
-          date1 = START_DATE;
-        }
-        String urlPath = "?district_id=" + district_id + "&date=" + date1;
-        if (VACCINE != null && !VACCINE.isEmpty()) {
-          urlPath = urlPath + "&vaccine=" + VACCINE;
+      if (!race.isEmpty()) {
+        log.info("Trying to book appointment: {} sessions", getSlot.body);
+        // alert sound
+        SoundUtils.alertSound(2);
+
+        Optional<BookingEngine.Booking> booking = race.await();
+        if (booking.isPresent()) {
+          BookingEngine.Candidate candidate = booking.get().candidate;
+          log.info("----------------------------------------------------------------------");
+          log.info("Appointment booked: {}", booking.get().response.get("appointment_confirmation_no"));
+          log.info("Center: {}", candidate.source);
+          log.info("Session: {}", candidate.session_id);
+          log.info("Slot: {}", candidate.slot);
+          done.set(true);
+          session.booked();
+          log.info("----------------------------------------------------------------------");
+          // queued records are written by the AsyncLog shutdown hook
+          System.exit(0);
         }
-        Map<String, Object> getSlot = getResponse(BASE_URL + findByDistrict_URL + urlPath, null, header, Method.GET);
-
-        String s = (String) getSlot.get("_raw");
-        //ignore it
-        if (s == null || s.toLowerCase().contains("unauthenticated"))
-          continue;
-        Root root = jsonMapper.readValue(s, Root.class);
-
-        if (root != null) {
-          Map<String, String> finalHeader = header;
-          root.centers.forEach(center -> {
-            center.sessions.forEach(session -> {
-              if (session.available_capacity > 1 && session.min_age_limit == MIN_AGE) {
-                if (fee_type != null && !fee_type.isEmpty()) {
-                  if (!center.fee_type.equalsIgnoreCase(fee_type)) {
-                    System.out.println("FEE TYPE NOT MATCHED. continue search ..");
-                    return;
-                  }
-                }
-
-                System.out.println("Slot available: " + center);
-                System.out.println("Pin code:" + center.pincode);
-                System.out.println("Hospital Name:" + center.name);
-                System.out.println("Hospital Address:" + center.address);
-                System.out.println("Available Capacity:" + session.available_capacity);
-                System.out.println("Date:" + session.date);
-                System.out.println("Slots:" + Arrays.toString(session.slots.toArray()));
-
-                session.slots.forEach(s1 -> {
-                  List<String> beneficiaries = new ArrayList<>();
-                  beneficiaries.addAll(BENEFICIARIES);
-
-                  Map<String, Object> input1 = new HashMap<>();
-                  input1.put("dose", Integer.valueOf(DOSE));
-                  input1.put("session_id", session.session_id);
-                  input1.put("center_id", center.center_id);
-                  input1.put("slot", s1);
-                  input1.put("beneficiaries", beneficiaries);
-
-                  try {
-                    System.out.println("Trying to book appointment:");
-
-                    // alert sound
-                    SoundUtils.alertSound(2);
-
-                    // generate captcha
-                    System.out.println("Getting captcha");
-                    Map<String, Object> getCaptcha = getResponse(BASE_URL + captcha_URL, null, finalHeader, Method.POST);
-//                    System.out.println(getCaptcha);
-
-                    String svg = (String) getCaptcha.get("captcha");
-
-                    if (svg == null) {
-                      System.out.println("Empty SVG file:" + getCaptcha);
-                      return;
-                    }
-
-                    FileWriter fileWriter = new FileWriter("captcha-new.svg");
-                    fileWriter.write(svg.toCharArray());
-                    fileWriter.close();
-
-                    try {
-                      CaptchaSolver.svgToPng("captcha-new.svg", "captcha-new.png");
-                    } catch (TranscoderException e) {
-                      e.printStackTrace();
-                    }
-
-//                    Desktop.getDesktop().open(new File("captcha-new.png"));
-                    String captcha = CaptchaWindow.createWindow();
-
-//                    System.out.println("Enter captcha:");
-//
-//                    String captcha = sc.next();
-                    System.out.println(captcha);
-
-                    input1.put("captcha", captcha);
-
-                    Map<String, Object> getAppointment = getResponse(BASE_URL + appointment_URL, input1, finalHeader, Method.POST);
-
-                    System.out.println("Appointment status code: " + getAppointment.get("status_code"));
-
-                    String appointment_id = (String) getAppointment.get("appointment_confirmation_no");
-                    if (appointment_id != null && !appointment_id.isEmpty()) {
-                      System.out.println("----------------------------------------------------------------------");
-                      System.out.println("Appointment booked: " + appointment_id);
-                      System.out.println("Center: " + center);
-                      System.out.println("Session: " + session);
-                      System.out.println("Slot: " + s1);
-                      done.set(true);
-                      System.out.println("----------------------------------------------------------------------");
-                      System.exit(0);
-                      return;
-                    } else {
-                      System.out.println("Failed :(" + getAppointment);
-                    }
-                  } catch (IOException | LineUnavailableException e) {
-                    e.printStackTrace();
-                  }
-                });
+      }
+  //    System.out.println("No Slot available :(");
+      // no sleep needed, RateLimiter spaces the polls
+    }
+  }
 
+  /**
+   * Reads the captcha from its svg glyphs when every glyph was learned from an accepted answer,
+   * otherwise asks in the captcha window, pre-filled with what was decoded. The glyphs are learned
+   * in the book step, once the server has accepted the answer.
+   */
+  static String readCaptcha(Captcha captcha) throws IOException {
+    TraceEvents.CaptchaInput input = TraceEvents.begin(new TraceEvents.CaptchaInput());
+    SvgCaptchaDecoder decoder = SvgCaptchaDecoder.shared();
+    String text = decoder.decode(captcha.svg);
+    if (text != null && decoder.trusted(text)) {
+      log.info("Captcha decoded from svg: {}", text);
+      return input.end("svg", text);
+    }
+    if (captcha.ocr != null) {
+      // read while the captcha was prepared, see TessPool.read
+      log.info("Captcha read by OCR: {}", captcha.ocr);
+      return input.end("ocr", captcha.ocr);
+    }
+    return input.end("human", Prompts.captcha(captcha.image, text));
+  }
 
-              }
-            });
-          });
-//          System.out.println("No Slot available :(");
-          Thread.sleep(500);
-        }
-      }
+  /**
+   * Fetches a captcha for a booking attempt and renders it in memory, so attempts can run side by side.
+   */
+  static Captcha prepareCaptcha(BookingEngine.Candidate candidate, Map<String, String> header, TokenManager tokenManager)
+      throws IOException, TranscoderException {
+    // generate captcha
+    log.info("Getting captcha for {}", candidate);
+    TraceEvents.CaptchaFetch fetch = TraceEvents.begin(new TraceEvents.CaptchaFetch());
+    String authorization = header.get(HttpHeaders.AUTHORIZATION);
+    Map<String, Object> getCaptcha = getResponse(BASE_URL + captcha_URL, null, header, Method.POST);
+    fetch.status = (int) getCaptcha.getOrDefault("status_code", 0);
+    fetch.commit();
+    tokenManager.onResponse(authorization, fetch.status);
+//    System.out.println(getCaptcha);
+
+    String svg = (String) getCaptcha.get("captcha");
+
+    if (svg == null) {
+      log.warn("Empty SVG file, status {}: {}", getCaptcha.get("status_code"), getCaptcha.get("error"));
+      return null;
     }
+
+    TraceEvents.CaptchaRender render = TraceEvents.begin(new TraceEvents.CaptchaRender());
+    BufferedImage image = CaptchaSolver.svgToImage(svg);
+    render.commit();
+    return new Captcha(svg, image, TessPool.read(image));
   }
+
 }
@@ -0,0 +1,16 @@
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * One session of a {@link Center} in calendarByDistrict / calendarByPin responses.
+ */
+@ToString
+class Session {
+  public String session_id;
+  public String date;
+  public int available_capacity;
+  public int min_age_limit;
+  public String vaccine;
+  public List<String> slots;
+}
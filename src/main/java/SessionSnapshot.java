@@ -0,0 +1,172 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the previous response of one poll query looked like, so only changes are booked.
+ * <p>
+ * Sessions are keyed by a 64 bit hash of their session_id in an open addressing table of
+ * primitive arrays (capacity, poll generation it was last seen in, last time it was sent to
+ * booking). {@link #observe} classifies every matching session of a poll against the previous
+ * one, {@link #end} drops sessions that are gone. A session whose capacity did not change is
+ * offered again after -Dchange.retrySec (default 60, 0 = never), in case the last attempt failed
+ * on something other than the slot being taken (e.g. a mistyped captcha).
+ */
+public class SessionSnapshot {
+
+  public enum Delta {
+    OPENED, INCREASED, RETRY, UNCHANGED, DECREASED;
+
+    /**
+     * @return whether the session should go to the booking stage
+     */
+    public boolean bookable() {
+      return this == OPENED || this == INCREASED || this == RETRY;
+    }
+  }
+
+  static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("change.retrySec", 60));
+
+  private long[] keys = new long[64];
+  private int[] capacity = new int[64];
+  private int[] seenIn = new int[64];
+  private long[] offeredAt = new long[64];
+  private int size;
+  private int generation;
+  // a previous poll was read completely, so OPENED really means new
+  private boolean primed;
+  private boolean counting;
+  private int releases;
+
+  /**
+   * Starts a poll, call {@link #end} once its response was read completely.
+   */
+  public synchronized void begin() {
+    generation++;
+    counting = primed;
+    releases = 0;
+  }
+
+  /**
+   * Records a matching session of the current poll.
+   */
+  public synchronized Delta observe(String sessionId, int available) {
+    long key = hash(sessionId);
+    int slot = find(key);
+    long now = System.nanoTime();
+    if (keys[slot] == 0) {
+      insert(slot, key, available, now);
+      if (counting) {
+        releases++;
+      }
+      return Delta.OPENED;
+    }
+    int previous = capacity[slot];
+    capacity[slot] = available;
+    seenIn[slot] = generation;
+    if (available > previous) {
+      offeredAt[slot] = now;
+      if (counting) {
+        releases++;
+      }
+      return Delta.INCREASED;
+    }
+    if (available < previous) {
+      return Delta.DECREASED;
+    }
+    if (RETRY_NANOS > 0 && now - offeredAt[slot] >= RETRY_NANOS) {
+      offeredAt[slot] = now;
+      return Delta.RETRY;
+    }
+    return Delta.UNCHANGED;
+  }
+
+  /**
+   * Ends a successfully read poll, sessions it did not return are forgotten, so they count as
+   * opened if they come back.
+   *
+   * @return number of sessions that disappeared since the previous poll
+   */
+  public synchronized int end() {
+    primed = true;
+    int removed = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != 0 && seenIn[i] != generation) {
+        removed++;
+      }
+    }
+    if (removed > 0) {
+      rehash(keys.length, true);
+    }
+    return removed;
+  }
+
+  /**
+   * @return sessions opened or grown in the current poll, 0 for the first poll of the query since
+   * everything is new there
+   */
+  public synchronized int releases() {
+    return releases;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  private void insert(int slot, long key, int available, long now) {
+    keys[slot] = key;
+    capacity[slot] = available;
+    seenIn[slot] = generation;
+    offeredAt[slot] = now;
+    if (++size * 2 > keys.length) {
+      rehash(keys.length * 2, false);
+    }
+  }
+
+  private int find(long key) {
+    int mask = keys.length - 1;
+    int slot = (int) (key ^ (key >>> 32)) & mask;
+    while (keys[slot] != 0 && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash(int length, boolean dropStale) {
+    long[] oldKeys = keys;
+    int[] oldCapacity = capacity;
+    int[] oldSeenIn = seenIn;
+    long[] oldOfferedAt = offeredAt;
+    keys = new long[length];
+    capacity = new int[length];
+    seenIn = new int[length];
+    offeredAt = new long[length];
+    size = 0;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] == 0 || dropStale && oldSeenIn[i] != generation) {
+        continue;
+      }
+      int slot = find(oldKeys[i]);
+      keys[slot] = oldKeys[i];
+      capacity[slot] = oldCapacity[i];
+      seenIn[slot] = oldSeenIn[i];
+      offeredAt[slot] = oldOfferedAt[i];
+      size++;
+    }
+  }
+
+  /**
+   * 64 bit FNV-1a of the session id, 0 marks an empty slot so it is never returned.
+   */
+  static long hash(String sessionId) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < sessionId.length(); i++) {
+      h ^= sessionId.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return h == 0 ? 1 : h;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "SessionSnapshot(size=" + size + ", generation=" + generation + ", table=" + keys.length + ")";
+  }
+}
@@ -0,0 +1,138 @@
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Everything a run sets up before polling: mobile, token with its expiry, the watched districts
+ * and pincodes, the picked beneficiaries and the preferences derived from them.
+ * <p>
+ * Kept in one small json file (-Dsession.file, default session.json), so a restart resumes
+ * polling without prompts or API calls while the token is valid, and asks only for the OTP once
+ * it expired. A booking clears the beneficiaries and dose, the next run picks them again.
+ * -Dsession.reset=true ignores the file and asks everything again.
+ */
+public class SessionStore {
+
+  static final boolean RESET = Boolean.parseBoolean(System.getProperty("session.reset", "false"));
+
+  private static final AsyncLog log = AsyncLog.get(SessionStore.class);
+
+  private static final ObjectMapper jsonMapper = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  public String mobile;
+  public String token;
+  public long token_expires_at;
+  public List<Integer> districts = new ArrayList<>();
+  public List<Integer> pincodes = new ArrayList<>();
+  public List<String> beneficiaries = new ArrayList<>();
+  public int min_age;
+  public String dose;
+  public String start_date;
+  public String vaccine;
+  public String fee_type;
+
+  private File file;
+
+  public static SessionStore load() {
+    return load(new File(System.getProperty("session.file", "session.json")));
+  }
+
+  public static SessionStore load(File file) {
+    SessionStore store = null;
+    if (!RESET && file.exists()) {
+      try {
+        store = jsonMapper.readValue(file, SessionStore.class);
+      } catch (IOException e) {
+        log.warn("Could not read session {}: {}", file, e.getMessage());
+      }
+    }
+    if (store == null) {
+      store = new SessionStore();
+    }
+    store.file = file;
+    return store;
+  }
+
+  /**
+   * Writes the store to a temporary file and moves it in place, so a crash never leaves half a file.
+   */
+  public synchronized void save() {
+    File tmp = new File(file.getPath() + ".tmp");
+    try {
+      jsonMapper.writeValue(tmp, this);
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Could not save session {}: {}", file, e.getMessage());
+    }
+  }
+
+  /**
+   * @return whether beneficiaries and preferences were picked in an earlier run
+   */
+  public synchronized boolean hasPreferences() {
+    return mobile != null && !beneficiaries.isEmpty() && dose != null;
+  }
+
+  /**
+   * @return the saved token of {@code mobile} if it is valid for longer than the token refresh margin, else null
+   */
+  public synchronized String validToken(String mobile) {
+    if (token == null || mobile == null || !mobile.equals(this.mobile)) {
+      return null;
+    }
+    if (System.currentTimeMillis() >= token_expires_at - TokenManager.REFRESH_MARGIN_MS) {
+      return null;
+    }
+    log.info("Using saved token, valid until {}", new Date(token_expires_at));
+    return token;
+  }
+
+  public synchronized void updateToken(String mobile, String token) {
+    this.mobile = mobile;
+    this.token = token;
+    long exp = TokenManager.expiryOf(token);
+    this.token_expires_at = exp > 0 ? exp : System.currentTimeMillis() + TokenManager.SESSION_MS;
+    save();
+  }
+
+  /**
+   * @return the targets watched before the restart, empty if none were saved
+   */
+  public synchronized List<Watcher.Target> watched() {
+    List<Watcher.Target> targets = new ArrayList<>();
+    districts.forEach(id -> targets.add(new Watcher.Target(false, id)));
+    pincodes.forEach(id -> targets.add(new Watcher.Target(true, id)));
+    return targets;
+  }
+
+  public synchronized void watch(Watcher watcher) {
+    districts = watcher.targets().stream().filter(t -> !t.pincode).map(t -> t.id).collect(Collectors.toList());
+    pincodes = watcher.targets().stream().filter(t -> t.pincode).map(t -> t.id).collect(Collectors.toList());
+    save();
+  }
+
+  /**
+   * Forgets the booked beneficiaries and their dose, so a restart does not book them again.
+   */
+  public synchronized void booked() {
+    beneficiaries = new ArrayList<>();
+    dose = null;
+    save();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "SessionStore(mobile=" + mobile + ", districts=" + districts + ", pincodes=" + pincodes + ", beneficiaries=" + beneficiaries
+        + ", min_age=" + min_age + ", dose=" + dose + ", start_date=" + start_date + ", vaccine=" + vaccine
+        + ", fee_type=" + fee_type + ", token valid until " + new Date(token_expires_at) + ")";
+  }
+}
@@ -0,0 +1,393 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Streaming filter over calendarByDistrict / findByDistrict responses.
+ * <p>
+ * Evaluates min_age_limit, vaccine, fee_type and capacity token by token and only builds
+ * {@link Center}/{@link Session} (or {@link Runner2.Session1}) objects for sessions that pass.
+ * Sessions are handed to the listener as soon as their closing brace is read, so booking
+ * can start before the rest of the document has been parsed.
+ */
+public class SlotMatcher {
+
+  // not Runner.jsonMapper, which would load Runner (session store, decoder) into Runner2 runs
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
+  private final int minAge;
+  private final int minCapacity;
+  private final int dose;
+  private final String vaccine;
+  private final String feeType;
+
+  /**
+   * @param minAge      required min_age_limit
+   * @param minCapacity smallest capacity worth booking
+   * @param dose        1 or 2 to check the dose specific capacity, 0 to check available_capacity
+   * @param vaccine     required vaccine or null/empty for any
+   * @param feeType     required fee_type or null/empty for any
+   */
+  public SlotMatcher(int minAge, int minCapacity, int dose, String vaccine, String feeType) {
+    this.minAge = minAge;
+    this.minCapacity = minCapacity;
+    this.dose = dose;
+    this.vaccine = vaccine == null || vaccine.isEmpty() ? null : vaccine;
+    this.feeType = feeType == null || feeType.isEmpty() ? null : feeType;
+  }
+
+  /**
+   * Matches a calendarByDistrict document ({"centers": [{..., "sessions": [..]}]}).
+   *
+   * @return number of matching sessions
+   */
+  public int matchCalendar(InputStream in, BiConsumer<Center, Session> listener) throws IOException {
+    try (JsonParser p = jsonFactory.createParser(in)) {
+      if (p.nextToken() != JsonToken.START_OBJECT) {
+        return 0;
+      }
+      int matches = 0;
+      Fields center = new Fields();
+      Fields session = new Fields();
+      List<Session> pending = new ArrayList<>();
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String field = p.getCurrentName();
+        if (p.nextToken() != JsonToken.START_ARRAY || !"centers".equals(field)) {
+          p.skipChildren();
+          continue;
+        }
+        while (p.nextToken() == JsonToken.START_OBJECT) {
+          center.reset();
+          pending.clear();
+          Center built = null;
+          while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.getCurrentName();
+            p.nextToken();
+            if (!"sessions".equals(name)) {
+              readCenterField(p, name, center);
+              continue;
+            }
+            if (center.rejected || p.currentToken() != JsonToken.START_ARRAY) {
+              p.skipChildren();
+              continue;
+            }
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+              session.reset();
+              while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String sessionField = p.getCurrentName();
+                p.nextToken();
+                if (session.rejected || !readSessionField(p, sessionField, session)) {
+                  p.skipChildren();
+                }
+              }
+              if (!accept(session)) {
+                continue;
+              }
+              Session match = toSession(session);
+              if (center.feeTypeSeen) {
+                if (built == null) {
+                  built = toCenter(center);
+                }
+                built.sessions.add(match);
+                listener.accept(built, match);
+                matches++;
+              } else {
+                // fee_type comes after sessions in this center, decide once the center is complete
+                pending.add(match);
+              }
+            }
+          }
+          if (!pending.isEmpty() && !center.rejected) {
+            if (built == null) {
+              built = toCenter(center);
+            }
+            for (Session match : pending) {
+              built.sessions.add(match);
+              listener.accept(built, match);
+              matches++;
+            }
+          }
+        }
+      }
+      return matches;
+    }
+  }
+
+  /**
+   * Matches a findByDistrict document ({"sessions": [{flat center + session fields}]}).
+   *
+   * @return number of matching sessions
+   */
+  public int matchSessions(InputStream in, Consumer<Runner2.Session1> listener) throws IOException {
+    try (JsonParser p = jsonFactory.createParser(in)) {
+      if (p.nextToken() != JsonToken.START_OBJECT) {
+        return 0;
+      }
+      int matches = 0;
+      Fields session = new Fields();
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String field = p.getCurrentName();
+        if (p.nextToken() != JsonToken.START_ARRAY || !"sessions".equals(field)) {
+          p.skipChildren();
+          continue;
+        }
+        while (p.nextToken() == JsonToken.START_OBJECT) {
+          session.reset();
+          while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.getCurrentName();
+            p.nextToken();
+            if (session.rejected) {
+              p.skipChildren();
+            } else if (!readSessionField(p, name, session)) {
+              readCenterField(p, name, session);
+            }
+          }
+          if (accept(session)) {
+            listener.accept(toSession1(session));
+            matches++;
+          }
+        }
+      }
+      return matches;
+    }
+  }
+
+  private boolean accept(Fields s) {
+    if (s.rejected || !s.ageSeen) {
+      return false;
+    }
+    return capacityOf(dose, s.available_capacity, s.available_capacity_dose1, s.available_capacity_dose2) >= minCapacity;
+  }
+
+  /**
+   * Capacity that counts for {@code dose}: the dose specific one, or available_capacity for dose 0
+   * and for responses that do not fill in the per-dose fields.
+   */
+  public static int capacityOf(int dose, int available_capacity, int available_capacity_dose1, int available_capacity_dose2) {
+    if (dose != 1 && dose != 2) {
+      return available_capacity;
+    }
+    if (available_capacity_dose1 == 0 && available_capacity_dose2 == 0 && available_capacity > 0) {
+      return available_capacity;
+    }
+    return dose == 2 ? available_capacity_dose2 : available_capacity_dose1;
+  }
+
+  private boolean readCenterField(JsonParser p, String name, Fields f) throws IOException {
+    switch (name) {
+      case "center_id":
+        f.center_id = p.getValueAsInt();
+        return true;
+      case "name":
+        f.name = p.getValueAsString();
+        return true;
+      case "address":
+        f.address = p.getValueAsString();
+        return true;
+      case "state_name":
+        f.state_name = p.getValueAsString();
+        return true;
+      case "district_name":
+        f.district_name = p.getValueAsString();
+        return true;
+      case "block_name":
+        f.block_name = p.getValueAsString();
+        return true;
+      case "pincode":
+        f.pincode = p.getValueAsInt();
+        return true;
+      case "lat":
+        f.lat = p.getValueAsInt();
+        return true;
+      case "long":
+        f._long = p.getValueAsInt();
+        return true;
+      case "from":
+        f.from = p.getValueAsString();
+        return true;
+      case "to":
+        f.to = p.getValueAsString();
+        return true;
+      case "fee_type":
+        f.fee_type = p.getValueAsString();
+        f.feeTypeSeen = true;
+        if (feeType != null && !feeType.equalsIgnoreCase(f.fee_type)) {
+          f.rejected = true;
+        }
+        return true;
+      default:
+        p.skipChildren();
+        return false;
+    }
+  }
+
+  private boolean readSessionField(JsonParser p, String name, Fields f) throws IOException {
+    switch (name) {
+      case "session_id":
+        f.session_id = p.getValueAsString();
+        return true;
+      case "date":
+        f.date = p.getValueAsString();
+        return true;
+      case "available_capacity":
+        f.available_capacity = p.getValueAsInt();
+        if (dose == 0 && f.available_capacity < minCapacity) {
+          f.rejected = true;
+        }
+        return true;
+      case "available_capacity_dose1":
+        f.available_capacity_dose1 = p.getValueAsInt();
+        return true;
+      case "available_capacity_dose2":
+        f.available_capacity_dose2 = p.getValueAsInt();
+        return true;
+      case "min_age_limit":
+        f.min_age_limit = p.getValueAsInt();
+        f.ageSeen = true;
+        if (f.min_age_limit != minAge) {
+          f.rejected = true;
+        }
+        return true;
+      case "vaccine":
+        f.vaccine = p.getValueAsString();
+        if (vaccine != null && !vaccine.equalsIgnoreCase(f.vaccine)) {
+          f.rejected = true;
+        }
+        return true;
+      case "fee":
+        f.fee = p.getValueAsString();
+        return true;
+      case "slots":
+        f.slots.clear();
+        if (p.currentToken() == JsonToken.START_ARRAY) {
+          while (p.nextToken() != JsonToken.END_ARRAY) {
+            f.slots.add(p.getValueAsString());
+          }
+        }
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static Center toCenter(Fields f) {
+    Center c = new Center();
+    c.center_id = f.center_id;
+    c.name = f.name;
+    c.address = f.address;
+    c.state_name = f.state_name;
+    c.district_name = f.district_name;
+    c.block_name = f.block_name;
+    c.pincode = f.pincode;
+    c.lat = f.lat;
+    c._long = f._long;
+    c.from = f.from;
+    c.to = f.to;
+    c.fee_type = f.fee_type;
+    c.sessions = new ArrayList<>();
+    return c;
+  }
+
+  private static Session toSession(Fields f) {
+    Session s = new Session();
+    s.session_id = f.session_id;
+    s.date = f.date;
+    s.available_capacity = f.available_capacity;
+    s.min_age_limit = f.min_age_limit;
+    s.vaccine = f.vaccine;
+    s.slots = new ArrayList<>(f.slots);
+    return s;
+  }
+
+  private static Runner2.Session1 toSession1(Fields f) {
+    Runner2.Session1 s = new Runner2.Session1();
+    s.center_id = f.center_id;
+    s.name = f.name;
+    s.address = f.address;
+    s.state_name = f.state_name;
+    s.district_name = f.district_name;
+    s.block_name = f.block_name;
+    s.pincode = f.pincode;
+    s.from = f.from;
+    s.to = f.to;
+    s.lat = f.lat;
+    s._long = f._long;
+    s.fee_type = f.fee_type;
+    s.session_id = f.session_id;
+    s.date = f.date;
+    s.available_capacity_dose1 = f.available_capacity_dose1;
+    s.available_capacity_dose2 = f.available_capacity_dose2;
+    s.available_capacity = f.available_capacity;
+    s.fee = f.fee;
+    s.min_age_limit = f.min_age_limit;
+    s.vaccine = f.vaccine;
+    s.slots = new ArrayList<>(f.slots);
+    return s;
+  }
+
+  /**
+   * Reusable scratch for the fields of the center / session currently under the parser.
+   */
+  private static final class Fields {
+    int center_id;
+    String name;
+    String address;
+    String state_name;
+    String district_name;
+    String block_name;
+    int pincode;
+    int lat;
+    int _long;
+    String from;
+    String to;
+    String fee_type;
+    boolean feeTypeSeen;
+
+    String session_id;
+    String date;
+    int available_capacity;
+    int available_capacity_dose1;
+    int available_capacity_dose2;
+    int min_age_limit;
+    boolean ageSeen;
+    String vaccine;
+    String fee;
+    final List<String> slots = new ArrayList<>();
+
+    boolean rejected;
+
+    void reset() {
+      center_id = 0;
+      name = null;
+      address = null;
+      state_name = null;
+      district_name = null;
+      block_name = null;
+      pincode = 0;
+      lat = 0;
+      _long = 0;
+      from = null;
+      to = null;
+      fee_type = null;
+      feeTypeSeen = false;
+      session_id = null;
+      date = null;
+      available_capacity = 0;
+      available_capacity_dose1 = 0;
+      available_capacity_dose2 = 0;
+      min_age_limit = 0;
+      ageSeen = false;
+      vaccine = null;
+      fee = null;
+      slots.clear();
+      rejected = false;
+    }
+  }
+}
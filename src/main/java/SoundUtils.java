@@ -1,9 +1,17 @@
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.SourceDataLine;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
+ * Alert beeps, played on a background thread so callers never wait for audio.
+ * <p>
+ * Waveforms are synthesized once into byte buffers and written to a single line that stays
+ * open. Without a usable audio line (headless hosts, no sound card) or with -Dsound=false
+ * alerts are a no-op. Alerts that arrive while the queue is full are dropped, they would only
+ * repeat what is already playing.
+ *
  * @author Nishant Kumar
  * @date 13/05/21
  */
@@ -12,38 +20,98 @@ public class SoundUtils {
 
   public static float SAMPLE_RATE = 8000f;
 
-  public static void tone(int hz, int msecs)
-      throws LineUnavailableException {
+  static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("sound", "true"));
+
+  private static final AudioFormat FORMAT =
+      new AudioFormat(
+          SAMPLE_RATE, // sampleRate
+          8,           // sampleSizeInBits
+          1,           // channels
+          true,        // signed
+          false);      // bigEndian
+
+  // one alert beep followed by the pause the old open/close per tone used to leave
+  private static final byte[] BEEP = concat(synthesize(1000, 100, 1.0), new byte[(int) (SAMPLE_RATE * 50 / 1000)]);
+
+  private static final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(8);
+  private static volatile boolean available = ENABLED;
+  private static Thread player;
+
+  /**
+   * Starts the playback thread and opens the line, so the first alert plays right away.
+   */
+  public static synchronized void start() {
+    if (player != null || !available) {
+      return;
+    }
+    player = new Thread(SoundUtils::play, "sound");
+    player.setDaemon(true);
+    player.start();
+  }
+
+  public static void tone(int hz, int msecs) {
     tone(hz, msecs, 1.0);
   }
 
-  public static void tone(int hz, int msecs, double vol)
-      throws LineUnavailableException {
-    byte[] buf = new byte[1];
-    AudioFormat af =
-        new AudioFormat(
-            SAMPLE_RATE, // sampleRate
-            8,           // sampleSizeInBits
-            1,           // channels
-            true,        // signed
-            false);      // bigEndian
-    SourceDataLine sdl = AudioSystem.getSourceDataLine(af);
-    sdl.open(af);
-    sdl.start();
-    for (int i = 0; i < msecs * 8; i++) {
-      double angle = i / (SAMPLE_RATE / hz) * 2.0 * Math.PI;
-      buf[0] = (byte) (Math.sin(angle) * 127.0 * vol);
-      sdl.write(buf, 0, 1);
-    }
-    sdl.drain();
-    sdl.stop();
-    sdl.close();
+  public static void tone(int hz, int msecs, double vol) {
+    enqueue(synthesize(hz, msecs, vol));
   }
 
-  public static void alertSound(int i) throws LineUnavailableException {
+  /**
+   * Queues {@code i} beeps and returns immediately.
+   */
+  public static void alertSound(int i) {
     for (int j = 0; j < i; j++) {
-      SoundUtils.tone(1000, 100);
+      enqueue(BEEP);
+    }
+  }
+
+  private static void enqueue(byte[] samples) {
+    if (!available) {
+      return;
     }
+    start();
+    queue.offer(samples);
+  }
+
+  private static void play() {
+    SourceDataLine sdl;
+    try {
+      sdl = AudioSystem.getSourceDataLine(FORMAT);
+      sdl.open(FORMAT);
+      sdl.start();
+    } catch (Exception e) {
+      // LineUnavailableException, or IllegalArgumentException when there is no mixer at all
+      System.out.println("No audio line, alerts are off: " + e);
+      available = false;
+      queue.clear();
+      return;
+    }
+    try {
+      while (true) {
+        byte[] samples = queue.take();
+        sdl.write(samples, 0, samples.length);
+      }
+    } catch (InterruptedException e) {
+      sdl.drain();
+      sdl.close();
+    }
+  }
+
+  static byte[] synthesize(int hz, int msecs, double vol) {
+    byte[] buf = new byte[(int) (SAMPLE_RATE * msecs / 1000)];
+    double step = 2.0 * Math.PI * hz / SAMPLE_RATE;
+    for (int i = 0; i < buf.length; i++) {
+      buf[i] = (byte) (Math.sin(i * step) * 127.0 * vol);
+    }
+    return buf;
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] out = new byte[a.length + b.length];
+    System.arraycopy(a, 0, out, 0, a.length);
+    System.arraycopy(b, 0, out, a.length, b.length);
+    return out;
   }
 
   public static void main(String[] args) throws Exception {
@@ -57,6 +125,6 @@ public class SoundUtils {
     SoundUtils.tone(400, 500);
     Thread.sleep(1000);
     SoundUtils.tone(400, 500, 0.2);
-
+    Thread.sleep(1000);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,449 @@
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads booking captchas straight from their SVG markup, without rasterizing or OCR.
+ * <p>
+ * Every character of the captcha is a filled {@code <path>}, the noise lines are
+ * {@code fill="none"} strokes. Glyph paths are ordered by x offset and each one is reduced to a
+ * size independent signature (contour count, aspect ratio and a coarse grid histogram of its
+ * outline points), which is matched against a template table. The table is learned from captcha
+ * answers the booking API accepted ({@link #learnAccepted}) and persisted as json, the bundled
+ * sample captcha only seeds it. {@link #decode} returns null whenever a glyph is not a confident
+ * match, and a decoded captcha is only submitted without asking once it is {@link #trusted},
+ * otherwise it is a suggestion for the user. Runner and Runner2 share one decoder
+ * ({@link #shared}), loaded from and saved to -Dcaptcha.templates (default captcha-templates.json).
+ * <p>
+ * -Dcaptcha.svgDecode=false turns decoding off, -Dcaptcha.svgSubmit picks what is submitted
+ * without asking: learned (default), always or never. -Dcaptcha.maxDistance (default 0.35) is the
+ * largest signature distance of a match: a glyph of the sample redrawn smaller and tilted by up to
+ * 2 degrees stays within it, two different glyphs of the sample are over 0.8 apart (see
+ * SvgCaptchaDecoderTest).
+ */
+public class SvgCaptchaDecoder {
+
+  static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("captcha.svgDecode", "true"));
+  static final String SUBMIT = System.getProperty("captcha.svgSubmit", "learned");
+  static final int GRID = 6;
+  static final double MAX_DISTANCE = Double.parseDouble(System.getProperty("captcha.maxDistance", "0.35"));
+  static final String SAMPLE_ANSWER = "EPgES";
+  // schedule/reschedule error for a wrong captcha
+  static final String INVALID_CAPTCHA = "APPOIN0044";
+
+  private static final AsyncLog log = AsyncLog.get(SvgCaptchaDecoder.class);
+
+  // not Runner.jsonMapper: templates are saved from a shutdown hook, where loading Runner would fail
+  private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+  // character -> signatures learned from accepted answers, these are saved
+  private final Map<String, List<double[]>> templates = new HashMap<>();
+  // character -> signatures of the bundled sample, good for suggestions only
+  private final Map<String, List<double[]>> seeded = new HashMap<>();
+
+  /**
+   * The decoder of this JVM, loaded on first use and saved by a single shutdown hook.
+   */
+  public static SvgCaptchaDecoder shared() {
+    return Shared.decoder;
+  }
+
+  private static final class Shared {
+    static final File file = new File(System.getProperty("captcha.templates", "captcha-templates.json"));
+    static final SvgCaptchaDecoder decoder = load(file);
+
+    static {
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          decoder.save(file);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }, "captcha-templates"));
+    }
+  }
+
+  /**
+   * Loads templates from {@code file} (if present) and seeds the decoder with the bundled sample captcha.
+   */
+  public static SvgCaptchaDecoder load(File file) {
+    SvgCaptchaDecoder decoder = new SvgCaptchaDecoder();
+    try (InputStream in = SvgCaptchaDecoder.class.getResourceAsStream("/captcha-sample.svg")) {
+      if (in != null) {
+        decoder.learn(IOUtils.toString(in, StandardCharsets.UTF_8), SAMPLE_ANSWER, decoder.seeded);
+      }
+    } catch (IOException e) {
+      log.warn("Could not read sample captcha: {}", e.getMessage());
+    }
+    if (file != null && file.exists()) {
+      try {
+        Map<String, List<double[]>> saved = jsonMapper.readValue(file, new TypeReference<Map<String, List<double[]>>>() {
+        });
+        // older files saved the sample glyphs along with the learned ones, they must not count as learned
+        saved.forEach((character, known) -> known.removeIf(glyph -> contains(decoder.seeded.get(character), glyph)));
+        saved.values().removeIf(List::isEmpty);
+        decoder.templates.putAll(saved);
+      } catch (IOException e) {
+        log.warn("Could not read captcha templates {}: {}", file, e.getMessage());
+      }
+    }
+    return decoder;
+  }
+
+  public synchronized void save(File file) throws IOException {
+    jsonMapper.writeValue(file, templates);
+  }
+
+  /**
+   * @return the captcha text, or null if any glyph has no confident template match (or -Dcaptcha.svgDecode=false)
+   */
+  public String decode(String svg) {
+    if (!ENABLED) {
+      return null;
+    }
+    List<double[]> glyphs = glyphs(svg);
+    if (glyphs.isEmpty()) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder(glyphs.size());
+    synchronized (this) {
+      for (double[] glyph : glyphs) {
+        String best = null;
+        double bestDistance = Double.MAX_VALUE;
+        for (Map<String, List<double[]>> table : Arrays.asList(templates, seeded)) {
+          for (Map.Entry<String, List<double[]>> entry : table.entrySet()) {
+            for (double[] template : entry.getValue()) {
+              double d = distance(glyph, template);
+              if (d < bestDistance) {
+                bestDistance = d;
+                best = entry.getKey();
+              }
+            }
+          }
+        }
+        if (best == null || bestDistance > MAX_DISTANCE) {
+          return null;
+        }
+        sb.append(best);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Whether a {@link #decode}d captcha can be submitted without asking, see -Dcaptcha.svgSubmit.
+   * With learned, every character of it needs a template learned from an accepted answer: the
+   * sample has 4 distinct characters, a nearest match among those is a guess, and a wrong captcha
+   * costs the booking attempt.
+   */
+  public synchronized boolean trusted(String text) {
+    switch (SUBMIT) {
+      case "always":
+        return true;
+      case "never":
+        return false;
+      case "learned":
+        for (int i = 0; i < text.length(); i++) {
+          if (!templates.containsKey(String.valueOf(text.charAt(i)))) {
+            return false;
+          }
+        }
+        return true;
+      default:
+        throw new IllegalArgumentException("Unknown captcha.svgSubmit: " + SUBMIT);
+    }
+  }
+
+  /**
+   * Learns {@code answer} once a booking response shows the server took it: a booking, or a 409
+   * for a full slot, which the server only checks after the captcha. A wrong captcha or any other
+   * failure teaches nothing, so a mistyped answer never gets into the table.
+   *
+   * @param response the schedule/reschedule response, with its "status_code"
+   */
+  public boolean learnAccepted(String svg, String answer, Map<String, Object> response) {
+    if (response == null) {
+      return false;
+    }
+    Object status = response.get("status_code");
+    boolean accepted = status instanceof Integer && ((Integer) status / 100 == 2 || (Integer) status == 409)
+        && !INVALID_CAPTCHA.equals(response.get("errorCode"));
+    return accepted && learn(svg, answer);
+  }
+
+  /**
+   * Adds the glyphs of a solved captcha to the template table.
+   *
+   * @return false if the answer does not line up with the glyphs found in the svg
+   */
+  public boolean learn(String svg, String answer) {
+    return learn(svg, answer, templates);
+  }
+
+  private boolean learn(String svg, String answer, Map<String, List<double[]>> table) {
+    if (answer == null) {
+      return false;
+    }
+    List<double[]> glyphs = glyphs(svg);
+    if (glyphs.isEmpty() || glyphs.size() != answer.length()) {
+      return false;
+    }
+    synchronized (this) {
+      for (int i = 0; i < glyphs.size(); i++) {
+        List<double[]> known = table.computeIfAbsent(String.valueOf(answer.charAt(i)), k -> new ArrayList<>());
+        double[] glyph = glyphs.get(i);
+        if (!contains(known, glyph)) {
+          known.add(glyph);
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the number of learned templates, the sample glyphs are not counted
+   */
+  public synchronized int size() {
+    return templates.values().stream().mapToInt(List::size).sum();
+  }
+
+  // whether one of the templates is (nearly) the same drawing as the glyph
+  private static boolean contains(List<double[]> known, double[] glyph) {
+    if (known != null) {
+      for (double[] template : known) {
+        if (distance(glyph, template) < MAX_DISTANCE / 4) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Signatures of the filled (glyph) paths of the svg, ordered left to right.
+   */
+  static List<double[]> glyphs(String svg) {
+    List<double[]> glyphs = new ArrayList<>();
+    int from = 0;
+    int start;
+    while ((start = svg.indexOf("<path", from)) >= 0) {
+      int end = svg.indexOf('>', start);
+      if (end < 0) {
+        break;
+      }
+      from = end + 1;
+      String fill = attribute(svg, " fill=\"", start, end);
+      String d = attribute(svg, " d=\"", start, end);
+      // noise lines are plain strokes
+      if (d == null || "none".equals(fill)) {
+        continue;
+      }
+      double[] signature = signature(d);
+      if (signature != null) {
+        glyphs.add(signature);
+      }
+    }
+    glyphs.sort(Comparator.comparingDouble(g -> g[0]));
+    return glyphs;
+  }
+
+  private static String attribute(String svg, String name, int start, int end) {
+    int at = svg.indexOf(name, start);
+    if (at < 0 || at > end) {
+      return null;
+    }
+    int valueStart = at + name.length();
+    int valueEnd = svg.indexOf('"', valueStart);
+    return valueEnd < 0 || valueEnd > end ? null : svg.substring(valueStart, valueEnd);
+  }
+
+  /**
+   * Layout: [min x, contours, aspect ratio, GRID x GRID point histogram]. Only the part after
+   * min x is compared.
+   */
+  static double[] signature(String d) {
+    double[] points = new double[256];
+    int count = 0;
+    int contours = 0;
+    double cx = 0;
+    double cy = 0;
+    double[] args = new double[6];
+    int[] pos = new int[1];
+    int len = d.length();
+    char command = 0;
+    int i = 0;
+    while (i < len) {
+      char c = d.charAt(i);
+      if (c == ' ' || c == ',') {
+        i++;
+        continue;
+      }
+      if (Character.isLetter(c)) {
+        command = c;
+        i++;
+        if (command == 'M' || command == 'm') {
+          contours++;
+        }
+        if (command == 'Z' || command == 'z') {
+          continue;
+        }
+      } else if (command == 0 || command == 'Z' || command == 'z') {
+        return null;
+      }
+      int arity;
+      switch (Character.toUpperCase(command)) {
+        case 'M':
+        case 'L':
+        case 'T':
+          arity = 2;
+          break;
+        case 'H':
+        case 'V':
+          arity = 1;
+          break;
+        case 'Q':
+        case 'S':
+          arity = 4;
+          break;
+        case 'C':
+          arity = 6;
+          break;
+        default:
+          // arcs and unknown commands are not produced for glyphs
+          return null;
+      }
+      pos[0] = i;
+      for (int k = 0; k < arity; k++) {
+        if (!number(d, pos, args, k)) {
+          return null;
+        }
+      }
+      i = pos[0];
+      boolean relative = Character.isLowerCase(command);
+      char upper = Character.toUpperCase(command);
+      if (upper == 'H') {
+        cx = relative ? cx + args[0] : args[0];
+      } else if (upper == 'V') {
+        cy = relative ? cy + args[0] : args[0];
+      }
+      if (count + arity + 2 > points.length) {
+        points = Arrays.copyOf(points, points.length * 2);
+      }
+      if (upper == 'H' || upper == 'V') {
+        points[count++] = cx;
+        points[count++] = cy;
+        continue;
+      }
+      double ox = cx;
+      double oy = cy;
+      for (int k = 0; k < arity; k += 2) {
+        cx = relative ? ox + args[k] : args[k];
+        cy = relative ? oy + args[k + 1] : args[k + 1];
+        points[count++] = cx;
+        points[count++] = cy;
+      }
+      // implicit lineto after moveto
+      if (upper == 'M') {
+        command = relative ? 'l' : 'L';
+      }
+    }
+    if (count == 0) {
+      return null;
+    }
+
+    double minX = Double.MAX_VALUE;
+    double minY = Double.MAX_VALUE;
+    double maxX = -Double.MAX_VALUE;
+    double maxY = -Double.MAX_VALUE;
+    for (int k = 0; k < count; k += 2) {
+      minX = Math.min(minX, points[k]);
+      minY = Math.min(minY, points[k + 1]);
+      maxX = Math.max(maxX, points[k]);
+      maxY = Math.max(maxY, points[k + 1]);
+    }
+    double w = Math.max(maxX - minX, 1e-6);
+    double h = Math.max(maxY - minY, 1e-6);
+
+    double[] signature = new double[3 + GRID * GRID];
+    signature[0] = minX;
+    signature[1] = contours;
+    signature[2] = w / h;
+    double unit = 2.0 / count;
+    for (int k = 0; k < count; k += 2) {
+      int gx = Math.min(GRID - 1, (int) ((points[k] - minX) / w * GRID));
+      int gy = Math.min(GRID - 1, (int) ((points[k + 1] - minY) / h * GRID));
+      signature[3 + gy * GRID + gx] += unit;
+    }
+    return signature;
+  }
+
+  /**
+   * Parses a plain decimal number (as written by svg-captcha) at pos[0] into out[index].
+   */
+  private static boolean number(String d, int[] pos, double[] out, int index) {
+    int i = pos[0];
+    int len = d.length();
+    while (i < len && (d.charAt(i) == ' ' || d.charAt(i) == ',')) {
+      i++;
+    }
+    boolean negative = false;
+    if (i < len && (d.charAt(i) == '-' || d.charAt(i) == '+')) {
+      negative = d.charAt(i) == '-';
+      i++;
+    }
+    int start = i;
+    double value = 0;
+    while (i < len && d.charAt(i) >= '0' && d.charAt(i) <= '9') {
+      value = value * 10 + (d.charAt(i++) - '0');
+    }
+    if (i < len && d.charAt(i) == '.') {
+      i++;
+      double scale = 0.1;
+      while (i < len && d.charAt(i) >= '0' && d.charAt(i) <= '9') {
+        value += (d.charAt(i++) - '0') * scale;
+        scale /= 10;
+      }
+    }
+    if (i == start) {
+      return false;
+    }
+    if (i < len && (d.charAt(i) == 'e' || d.charAt(i) == 'E')) {
+      // exponents never show up in captcha paths, fall back to the slow path
+      int end = i + 1;
+      if (end < len && (d.charAt(end) == '-' || d.charAt(end) == '+')) {
+        end++;
+      }
+      while (end < len && d.charAt(end) >= '0' && d.charAt(end) <= '9') {
+        end++;
+      }
+      value = Double.parseDouble(d.substring(start, end));
+      i = end;
+    }
+    out[index] = negative ? -value : value;
+    pos[0] = i;
+    return true;
+  }
+
+  static double distance(double[] a, double[] b) {
+    if (a[1] != b[1]) {
+      // different number of contours (e.g. 'P' vs 'F') is never the same character
+      return Double.MAX_VALUE;
+    }
+    double d = Math.abs(a[2] - b[2]);
+    for (int i = 3; i < a.length; i++) {
+      d += Math.abs(a[i] - b[i]);
+    }
+    return d;
+  }
+}
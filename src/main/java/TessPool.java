@@ -0,0 +1,186 @@
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of initialized tesseract engines ({@link CaptchaSolver}s), so captchas of racing
+ * booking attempts can be recognized in parallel.
+ * <p>
+ * Engines are created lazily up to the pool size and an engine is only ever used by the thread
+ * that borrowed it, callers beyond the pool size wait up to -Dcaptcha.ocrWaitMs for a free engine
+ * and then go without OCR. Recognition is off by default, enable it with -Dcaptcha.ocr=true. Pool
+ * size is -Dcaptcha.ocrThreads (defaults to the booking threads), results under
+ * -Dcaptcha.ocrMinConfidence are discarded.
+ */
+public class TessPool implements AutoCloseable {
+
+  private static final AsyncLog log = AsyncLog.get(TessPool.class);
+
+  static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("captcha.ocr", "false"));
+  static final int SIZE = Integer.getInteger("captcha.ocrThreads", BookingEngine.THREADS);
+  static final int MIN_CONFIDENCE = Integer.getInteger("captcha.ocrMinConfidence", 70);
+  static final long WAIT_MS = Long.getLong("captcha.ocrWaitMs", 5000);
+  // how often a waiting borrower checks whether the pool was closed
+  private static final long CLOSED_CHECK_MS = 100;
+
+  private static TessPool instance;
+
+  /**
+   * @return the shared pool, or null if OCR is disabled
+   */
+  public static synchronized TessPool get() {
+    if (!ENABLED) {
+      return null;
+    }
+    if (instance == null) {
+      instance = new TessPool(SIZE, null);
+      Runtime.getRuntime().addShutdownHook(new Thread(instance::close));
+    }
+    return instance;
+  }
+
+  /**
+   * Reads a captcha on the shared pool, meant to run on a booking worker while the captcha is prepared.
+   *
+   * @return the text, or null if OCR is disabled, failed or was not confident
+   */
+  public static String read(BufferedImage image) {
+    TessPool pool = get();
+    if (pool == null) {
+      return null;
+    }
+    TraceEvents.CaptchaInput event = TraceEvents.begin(new TraceEvents.CaptchaInput());
+    try {
+      return event.end("ocr", pool.solve(image));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Throwable e) {
+      // missing tessdata or native libraries
+      log.warn("OCR failed: {}", e.toString());
+    }
+    return event.end("ocr", null);
+  }
+
+  private final int size;
+  private final String tessdataPath;
+  private final BlockingQueue<CaptchaSolver> idle;
+  private int created;
+  private volatile boolean closed;
+
+  /**
+   * @param tessdataPath tessdata directory, null for the bundled one
+   */
+  public TessPool(int size, String tessdataPath) {
+    this.size = Math.max(1, size);
+    this.tessdataPath = tessdataPath;
+    this.idle = new ArrayBlockingQueue<>(this.size);
+  }
+
+  /**
+   * Recognizes a captcha image on a pooled engine.
+   *
+   * @return the text, or null if tesseract is not confident enough or no engine got free in time
+   */
+  public String solve(BufferedImage image) throws InterruptedException {
+    CaptchaSolver solver = borrow();
+    if (solver == null) {
+      log.warn("No free OCR engine after {} ms", WAIT_MS);
+      return null;
+    }
+    try {
+      String text = solver.solve(image);
+      if (text.isEmpty() || solver.confidence() < MIN_CONFIDENCE) {
+        return null;
+      }
+      return text;
+    } finally {
+      release(solver);
+    }
+  }
+
+  /**
+   * Initializes every engine of the pool up front.
+   */
+  public void prewarm() throws InterruptedException {
+    List<CaptchaSolver> borrowed = new ArrayList<>();
+    try {
+      for (int i = 0; i < size; i++) {
+        CaptchaSolver solver = borrow();
+        if (solver == null) {
+          break;
+        }
+        borrowed.add(solver);
+      }
+    } finally {
+      borrowed.forEach(this::release);
+    }
+  }
+
+  /**
+   * @return an engine, or null if none got free within {@link #WAIT_MS}
+   * @throws IllegalStateException if the pool is closed, also while waiting
+   */
+  private CaptchaSolver borrow() throws InterruptedException {
+    checkOpen();
+    CaptchaSolver solver = idle.poll();
+    if (solver != null) {
+      return solver;
+    }
+    boolean create;
+    synchronized (this) {
+      checkOpen();
+      create = created < size;
+      if (create) {
+        created++;
+      }
+    }
+    if (!create) {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MS);
+      long left;
+      while ((left = deadline - System.nanoTime()) > 0) {
+        solver = idle.poll(Math.min(left, TimeUnit.MILLISECONDS.toNanos(CLOSED_CHECK_MS)), TimeUnit.NANOSECONDS);
+        if (solver != null) {
+          return solver;
+        }
+        checkOpen();
+      }
+      return null;
+    }
+    try {
+      return tessdataPath == null ? new CaptchaSolver() : new CaptchaSolver(tessdataPath);
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        created--;
+      }
+      throw e;
+    }
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("Tesseract pool is closed");
+    }
+  }
+
+  private void release(CaptchaSolver solver) {
+    synchronized (this) {
+      if (!closed && idle.offer(solver)) {
+        return;
+      }
+    }
+    solver.close();
+  }
+
+  @Override
+  public void close() {
+    List<CaptchaSolver> solvers = new ArrayList<>();
+    synchronized (this) {
+      closed = true;
+      idle.drainTo(solvers);
+    }
+    solvers.forEach(CaptchaSolver::close);
+  }
+}
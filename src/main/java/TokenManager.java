@@ -0,0 +1,117 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the bearer token and renews it only when it is about to expire or a real call got a 401.
+ * <p>
+ * The expiry is read from the JWT {@code exp} claim locally, so no API call is spent on checking
+ * the token during polling. Tokens without a readable expiry are assumed to live for the usual
+ * 15 minute session. Renewal margin can be set with -Dtoken.refreshMarginSec.
+ */
+public class TokenManager {
+
+  private static final AsyncLog log = AsyncLog.get(TokenManager.class);
+
+  public interface Authenticator {
+    String authenticate() throws Exception;
+  }
+
+  static final long SESSION_MS = TimeUnit.MINUTES.toMillis(15);
+  static final long REFRESH_MARGIN_MS = TimeUnit.SECONDS.toMillis(Long.getLong("token.refreshMarginSec", 30));
+  static final String BEARER = "Bearer ";
+
+  // only reads claims; Runner.jsonMapper would initialize Runner when Runner2 checks a token
+  private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+  private final Authenticator authenticator;
+  private volatile String token;
+  private volatile long expiresAt;
+
+  public TokenManager(String token, Authenticator authenticator) {
+    this.authenticator = authenticator;
+    set(token);
+  }
+
+  /**
+   * Returns a token that is valid for at least the refresh margin, re-authenticating if needed.
+   */
+  public String current() throws IOException, InterruptedException {
+    String t = token;
+    if (t != null && System.currentTimeMillis() < expiresAt - REFRESH_MARGIN_MS) {
+      return t;
+    }
+    synchronized (this) {
+      if (token == null || System.currentTimeMillis() >= expiresAt - REFRESH_MARGIN_MS) {
+        log.info("Token expired or about to expire, generating new token");
+        try {
+          set(authenticator.authenticate());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new IOException(e);
+        }
+      }
+      return token;
+    }
+  }
+
+  /**
+   * Called when the API rejected {@code rejected} with a 401, the next {@link #current()} renews it.
+   */
+  public synchronized void invalidate(String rejected) {
+    if (rejected != null && rejected.equals(token)) {
+      expiresAt = 0;
+    }
+  }
+
+  /**
+   * Feeds back the status of a call sent with the Authorization header {@code authorization}, a
+   * 401 invalidates its token like {@link #invalidate(String)}.
+   *
+   * @return true if the token was rejected
+   */
+  public boolean onResponse(String authorization, int statusCode) {
+    if (statusCode != 401 || authorization == null) {
+      return false;
+    }
+    log.warn("Token rejected (401), renewing it before the next call");
+    invalidate(authorization.startsWith(BEARER) ? authorization.substring(BEARER.length()) : authorization);
+    return true;
+  }
+
+  public long getExpiresAt() {
+    return expiresAt;
+  }
+
+  private synchronized void set(String token) {
+    this.token = token;
+    long exp = expiryOf(token);
+    this.expiresAt = exp > 0 ? exp : System.currentTimeMillis() + SESSION_MS;
+  }
+
+  /**
+   * @return the {@code exp} claim of a JWT in epoch millis, or 0 if it can't be read
+   */
+  public static long expiryOf(String jwt) {
+    if (jwt == null) {
+      return 0;
+    }
+    String[] parts = jwt.split("\\.");
+    if (parts.length < 2) {
+      return 0;
+    }
+    try {
+      byte[] payload = Base64.getUrlDecoder().decode(parts[1]);
+      JsonNode claims = jsonMapper.readTree(new String(payload, StandardCharsets.UTF_8));
+      JsonNode exp = claims.get("exp");
+      return exp != null && exp.canConvertToLong() ? TimeUnit.SECONDS.toMillis(exp.asLong()) : 0;
+    } catch (IllegalArgumentException | IOException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,135 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder events along a poll and the booking attempts it starts.
+ * <p>
+ * Attempt events carry the {@link BookingEngine.Candidate#attempt_id} plus session and slot of
+ * the attempt running on the current thread, so one attempt reads as a timeline: captcha fetch,
+ * render, OCR / captcha input, booking request. Poll, parse and match events are keyed by query
+ * and session_id. Events cost next to nothing unless a recording is running, e.g.
+ * {@code -XX:StartFlightRecording=filename=cowin.jfr} (JDK 8u262 or later).
+ */
+public final class TraceEvents {
+
+  private static final ThreadLocal<BookingEngine.Candidate> attempt = new ThreadLocal<>();
+
+  private TraceEvents() {
+  }
+
+  /**
+   * Marks the current thread as working on {@code candidate} (null clears it).
+   */
+  static void attempt(BookingEngine.Candidate candidate) {
+    if (candidate == null) {
+      attempt.remove();
+    } else {
+      attempt.set(candidate);
+    }
+  }
+
+  /**
+   * Fills in the attempt of the current thread and starts timing.
+   */
+  static <T extends AttemptEvent> T begin(T event) {
+    BookingEngine.Candidate candidate = attempt.get();
+    if (candidate != null) {
+      event.attemptId = candidate.attempt_id;
+      event.sessionId = candidate.session_id;
+      event.slot = candidate.slot;
+    }
+    event.begin();
+    return event;
+  }
+
+  @Category("CoWIN")
+  abstract static class AttemptEvent extends Event {
+    @Label("Attempt")
+    long attemptId;
+    @Label("Session")
+    String sessionId;
+    @Label("Slot")
+    String slot;
+  }
+
+  @Name("cowin.Poll")
+  @Label("Poll")
+  @Category("CoWIN")
+  @Description("One slot poll, from sending the request to the last matched session")
+  static class Poll extends Event {
+    @Label("Query")
+    String query;
+    @Label("Status")
+    int status;
+    @Label("Matched sessions")
+    int matched;
+  }
+
+  @Name("cowin.Parse")
+  @Label("Parse")
+  @Category("CoWIN")
+  @Description("Reading and decoding a response body, for polls including slot matching")
+  static class Parse extends Event {
+    @Label("URL")
+    String url;
+  }
+
+  @Name("cowin.Match")
+  @Label("Match")
+  @Category("CoWIN")
+  @Description("A session that passed the filters and goes to booking")
+  static class Match extends Event {
+    @Label("Session")
+    String sessionId;
+    @Label("Center")
+    int centerId;
+    @Label("Capacity")
+    int capacity;
+    @Label("Change")
+    String delta;
+  }
+
+  @Name("cowin.CaptchaFetch")
+  @Label("Captcha Fetch")
+  @Description("getRecaptcha call of a booking attempt")
+  static class CaptchaFetch extends AttemptEvent {
+    @Label("Status")
+    int status;
+  }
+
+  @Name("cowin.CaptchaRender")
+  @Label("Captcha Render")
+  @Description("svg to image")
+  static class CaptchaRender extends AttemptEvent {
+  }
+
+  @Name("cowin.CaptchaInput")
+  @Label("Captcha Input")
+  @Description("Reading the captcha text: svg decoder, OCR or a human")
+  static class CaptchaInput extends AttemptEvent {
+    @Label("Source")
+    String source;
+    @Label("Solved")
+    boolean solved;
+
+    String end(String source, String text) {
+      this.source = source;
+      this.solved = text != null && !text.isEmpty();
+      commit();
+      return text;
+    }
+  }
+
+  @Name("cowin.Book")
+  @Label("Book")
+  @Description("schedule / reschedule request of a booking attempt")
+  static class Book extends AttemptEvent {
+    @Label("Status")
+    int status;
+    @Label("Booked")
+    boolean booked;
+  }
+}
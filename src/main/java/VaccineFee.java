@@ -0,0 +1,10 @@
+import lombok.ToString;
+
+/**
+ * Paid vaccine price of a {@link Center}.
+ */
+@ToString
+class VaccineFee {
+  public String vaccine;
+  public String fee;
+}
@@ -0,0 +1,107 @@
+import org.apache.commons.io.IOUtils;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads and exercises the captcha engines in the background while we are still idle
+ * (prompts, first polls), so the first real booking attempt does not pay for class loading,
+ * native library loading and JIT warm-up.
+ * <p>
+ * Disable with -Dwarmup=false, skip tesseract/OpenCV with -Dwarmup.ocr=false.
+ */
+public class WarmUp {
+
+  static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("warmup", "true"));
+  static final boolean OCR = Boolean.parseBoolean(System.getProperty("warmup.ocr", "true"));
+  static final int ROUNDS = Integer.getInteger("warmup.rounds", 20);
+
+  private static final String SAMPLE_CALENDAR = "{\"centers\":[{\"center_id\":1,\"name\":\"warmup\",\"fee_type\":\"Free\","
+      + "\"sessions\":[{\"session_id\":\"warmup\",\"date\":\"01-01-2021\",\"available_capacity\":10,\"min_age_limit\":18,"
+      + "\"vaccine\":\"COVISHIELD\",\"slots\":[\"09:00AM-11:00AM\"]}]}]}";
+
+  public static Thread start() {
+    // opens the audio line now instead of at the first alert
+    SoundUtils.start();
+    Thread thread = new Thread(WarmUp::run, "warmup");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    if (ENABLED) {
+      thread.start();
+    }
+    return thread;
+  }
+
+  public static void run() {
+    long start = System.currentTimeMillis();
+    String svg;
+    try (InputStream in = WarmUp.class.getResourceAsStream("/captcha-sample.svg")) {
+      svg = IOUtils.toString(in, StandardCharsets.UTF_8);
+    } catch (Exception e) {
+      System.out.println("Warm-up skipped, no sample captcha: " + e);
+      return;
+    }
+
+    BufferedImage image = null;
+    try {
+      for (int i = 0; i < ROUNDS; i++) {
+        image = CaptchaSolver.svgToImage(svg);
+      }
+    } catch (Exception e) {
+      System.out.println("Warm-up of captcha rendering failed: " + e);
+    }
+
+    try {
+      SlotMatcher matcher = new SlotMatcher(18, 1, 0, null, null);
+      byte[] calendar = SAMPLE_CALENDAR.getBytes(StandardCharsets.UTF_8);
+      for (int i = 0; i < ROUNDS; i++) {
+        matcher.matchCalendar(new ByteArrayInputStream(calendar), (center, session) -> {
+        });
+      }
+    } catch (Exception e) {
+      System.out.println("Warm-up of slot matcher failed: " + e);
+    }
+
+    if (image != null && !GraphicsEnvironment.isHeadless()) {
+      BufferedImage captchaImage = image;
+      try {
+        // builds (but never shows) the same component tree as CaptchaWindow
+        SwingUtilities.invokeAndWait(() -> {
+          JFrame frame = new JFrame("Captcha");
+          JPanel panel = new JPanel(new BorderLayout());
+          panel.add(new JLabel(new ImageIcon(captchaImage)), BorderLayout.NORTH);
+          panel.add(new JTextField(10), BorderLayout.CENTER);
+          panel.add(new JButton("Submit"), BorderLayout.PAGE_END);
+          frame.getContentPane().add(panel, BorderLayout.CENTER);
+          frame.pack();
+          frame.dispose();
+        });
+      } catch (Exception e) {
+        System.out.println("Warm-up of captcha window failed: " + e);
+      }
+    }
+
+    if (OCR && image != null) {
+      try {
+        TessPool pool = TessPool.get();
+        if (pool != null) {
+          // initializes every pooled engine, booking attempts then never wait for tesseract to load
+          pool.prewarm();
+          pool.solve(image);
+        } else {
+          try (CaptchaSolver solver = new CaptchaSolver()) {
+            solver.solve(image);
+          }
+        }
+      } catch (Throwable e) {
+        // tessdata or native libraries missing, OCR is optional
+        System.out.println("Warm-up of OCR skipped: " + e);
+      }
+    }
+    System.out.println("Warm-up done in " + (System.currentTimeMillis() - start) + " ms");
+  }
+}
@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The districts and pincodes watched by one process.
+ * <p>
+ * Targets come from -Dwatch.districts and -Dwatch.pincodes (comma separated), or fall back to
+ * the targets saved by the previous run ({@link SessionStore}) and then to the district entered at
+ * startup. Every poll cycle queries each target once per date, in turn,
+ * so they share the {@link RateLimiter} budget evenly. A session returned by several queries of
+ * the same cycle (e.g. a pincode inside a watched district) is only booked once.
+ */
+public class Watcher {
+
+  public static final class Target {
+    public final boolean pincode;
+    public final int id;
+
+    Target(boolean pincode, int id) {
+      this.pincode = pincode;
+      this.id = id;
+    }
+
+    /**
+     * @return query string for the district / pincode endpoints
+     */
+    public String query(String date) {
+      return (pincode ? "?pincode=" : "?district_id=") + id + "&date=" + date;
+    }
+
+    @Override
+    public String toString() {
+      return (pincode ? "pincode " : "district ") + id;
+    }
+  }
+
+  private final List<Target> targets;
+  private final Set<String> claimed = ConcurrentHashMap.newKeySet();
+
+  public Watcher(List<Target> targets) {
+    this.targets = Collections.unmodifiableList(new ArrayList<>(targets));
+  }
+
+  public static Watcher fromProperties(List<Target> saved, int defaultDistrict) {
+    List<Target> targets = new ArrayList<>();
+    parse(System.getProperty("watch.districts", ""), false, targets);
+    parse(System.getProperty("watch.pincodes", ""), true, targets);
+    if (targets.isEmpty()) {
+      targets.addAll(saved);
+    }
+    if (targets.isEmpty()) {
+      targets.add(new Target(false, defaultDistrict));
+    }
+    return new Watcher(targets);
+  }
+
+  private static void parse(String ids, boolean pincode, List<Target> targets) {
+    for (String id : ids.split(",")) {
+      id = id.trim();
+      if (id.isEmpty()) {
+        continue;
+      }
+      Target target = new Target(pincode, Integer.parseInt(id));
+      if (targets.stream().noneMatch(t -> t.pincode == pincode && t.id == target.id)) {
+        targets.add(target);
+      }
+    }
+  }
+
+  public List<Target> targets() {
+    return targets;
+  }
+
+  /**
+   * Starts a poll cycle, sessions claimed in the previous cycle can be booked again.
+   */
+  public void newCycle() {
+    claimed.clear();
+  }
+
+  /**
+   * @return true the first time a session is seen in this cycle, false for duplicates
+   */
+  public boolean claim(String sessionId) {
+    return sessionId == null || claimed.add(sessionId);
+  }
+
+  /**
+   * Time between two polls of the same target and date, given the poll spacing of the rate limiter.
+   */
+  public long revisitMillis(int dates) {
+    return RateLimiter.get().pollIntervalMillis() * dates * targets.size();
+  }
+
+  @Override
+  public String toString() {
+    return targets.toString();
+  }
+}
@@ -0,0 +1,54 @@
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Parse and match times of {@link ApiMetrics#parse}.
+ */
+public class ApiMetricsTest {
+
+  @Test
+  public void matchTimeIsSplitFromParseTime() throws IOException {
+    String uri = "http://localhost/api/v2/appointment/sessions/parseTest?district_id=294";
+    EndpointStats stats = ApiMetrics.endpoint(uri);
+    Consumer<Integer> listener = ApiMetrics.matches(matched -> sleep(50));
+
+    // a body without matches has parse time only
+    assertEquals("none", ApiMetrics.parse(uri, in -> "none", body()));
+    assertEquals(1, stats.parse.count());
+    assertEquals(0, stats.match.count());
+
+    String parsed = ApiMetrics.parse(uri, in -> {
+      listener.accept(1);
+      listener.accept(2);
+      return "two";
+    }, body());
+    assertEquals("two", parsed);
+    assertEquals(2, stats.parse.count());
+    assertEquals(1, stats.match.count());
+    // both callbacks in one match time, not in the parse time
+    assertTrue(stats.getMatchMaxMillis() >= 100);
+    assertTrue(stats.getParseMaxMillis() < 50);
+
+    assertTrue(ApiMetrics.report().contains("cowin_match_ms_count{endpoint=\"parseTest\"} 1"));
+    assertTrue(ApiMetrics.report().contains("cowin_parse_ms_count{endpoint=\"parseTest\"} 2"));
+  }
+
+  private static InputStream body() {
+    return new ByteArrayInputStream(new byte[0]);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
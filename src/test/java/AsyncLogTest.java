@@ -0,0 +1,43 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link AsyncLog#snapshot} must freeze mutable arguments on the calling thread.
+ */
+public class AsyncLogTest {
+
+  @Test
+  public void keepsImmutableArgumentsAsTheyAre() {
+    Object[] args = {"text", 1, 2L, true, Thread.State.NEW, null};
+    assertSame(args, AsyncLog.snapshot(args));
+  }
+
+  @Test
+  public void turnsMutableArgumentsIntoStrings() {
+    List<String> slots = new ArrayList<>();
+    slots.add("09:00AM-11:00AM");
+    Object[] args = {"session", slots};
+    Object[] snapshot = AsyncLog.snapshot(args);
+    slots.add("11:00AM-01:00PM");
+    assertEquals("[09:00AM-11:00AM]", snapshot[1]);
+    assertSame(slots, args[1]);
+  }
+
+  @Test
+  public void survivesAFailingToString() {
+    Object broken = new Object() {
+      @Override
+      public String toString() {
+        throw new IllegalStateException("half parsed");
+      }
+    };
+    Object[] snapshot = AsyncLog.snapshot(new Object[]{broken});
+    assertTrue(String.valueOf(snapshot[0]), ((String) snapshot[0]).contains("half parsed"));
+  }
+}
@@ -0,0 +1,95 @@
+import java.awt.image.BufferedImage;
+
+/**
+ * The original per pixel {@link CaptchaSolver#cleanImage}, the oracle the raster version is checked against.
+ */
+final class CaptchaSolverReference {
+
+  private static final int DELTA = CaptchaSolver.DELTA;
+  private static final int WHITE = CaptchaSolver.WHITE;
+
+  private CaptchaSolverReference() {
+  }
+
+  /**
+   * Per pixel getRGB eligibility check. The left scan used to read {@code left < 0}, which never
+   * scanned and threw for pixels in column 0, it now mirrors the top scan.
+   */
+  static boolean isEligible(BufferedImage img, int x, int y) {
+
+    int left = x - 1;
+    while (left > 0 && x - left < 2 * DELTA) {
+      if (img.getRGB(left, y) == WHITE) {
+        break;
+      }
+      left--;
+    }
+    if (left < 0) {
+      return false;
+    }
+    int right = x + 1;
+
+    while (right < img.getWidth() && right - left < 2 * DELTA) {
+      if (img.getRGB(right, y) == WHITE) {
+        break;
+      }
+      right++;
+    }
+    if (right > img.getWidth()) {
+      return false;
+    }
+    int top = y - 1;
+    while (top > 0 && y - top < 2 * DELTA) {
+      if (img.getRGB(x, top) == WHITE) {
+        break;
+      }
+      top--;
+    }
+    if (top < 0) {
+      return false;
+    }
+    int bottom = y + 1;
+    while (bottom < img.getHeight() && bottom - top < 2 * DELTA) {
+      if (img.getRGB(x, bottom) == WHITE) {
+        break;
+      }
+      bottom++;
+    }
+    if (bottom > img.getHeight()) {
+      return false;
+    }
+
+
+    int width = right - left;
+    int height = bottom - top;
+    if (width >= DELTA && height >= DELTA) {
+      return true;
+    }
+    return false;
+
+  }
+
+  /**
+   * Walks the image through getRGB/setRGB.
+   */
+  static BufferedImage cleanImage(BufferedImage source) {
+    BufferedImage clone = CaptchaSolver.copy(source);
+    for (int i = 0; i < clone.getWidth(); i++) {
+      for (int j = 0; j < clone.getHeight(); j++) {
+        int rgb = clone.getRGB(i, j);
+        if (rgb == WHITE) {
+          continue;
+        }
+        if (isEligible(clone, i, j)) {
+          continue;
+        } else {
+          clone.setRGB(i, j, WHITE);
+        }
+
+      }
+    }
+
+    return clone;
+
+  }
+}
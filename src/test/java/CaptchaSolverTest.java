@@ -0,0 +1,50 @@
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * {@link CaptchaSolver#cleanImage} must whiten exactly the pixels {@link CaptchaSolverReference#cleanImage} does.
+ */
+public class CaptchaSolverTest {
+
+  @Test
+  public void cleanImageMatchesReferenceOnSampleCaptcha() throws Exception {
+    try (InputStream in = CaptchaSolverTest.class.getResourceAsStream("/captcha-sample.svg")) {
+      assertSameAsReference("sample captcha", CaptchaSolver.svgToImage(IOUtils.toString(in, StandardCharsets.UTF_8)));
+    }
+  }
+
+  @Test
+  public void cleanImageMatchesReferenceOnRandomNoise() {
+    int[] types = {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_BYTE_GRAY};
+    Random random = new Random(42);
+    for (int i = 0; i < 60; i++) {
+      int w = 1 + random.nextInt(80);
+      int h = 1 + random.nextInt(40);
+      double whiteRatio = random.nextDouble();
+      BufferedImage img = new BufferedImage(w, h, types[i % types.length]);
+      for (int x = 0; x < w; x++) {
+        for (int y = 0; y < h; y++) {
+          img.setRGB(x, y, random.nextDouble() < whiteRatio ? CaptchaSolver.WHITE : 0xFF000000 | random.nextInt(0x808080));
+        }
+      }
+      assertSameAsReference("fixture " + i + " (" + w + "x" + h + ", type " + img.getType() + ")", img);
+    }
+  }
+
+  private static void assertSameAsReference(String fixture, BufferedImage image) {
+    int w = image.getWidth();
+    int h = image.getHeight();
+    BufferedImage expected = CaptchaSolverReference.cleanImage(image);
+    BufferedImage actual = CaptchaSolver.cleanImage(image);
+    assertArrayEquals(fixture, expected.getRGB(0, 0, w, h, null, 0, w), actual.getRGB(0, 0, w, h, null, 0, w));
+  }
+}
@@ -0,0 +1,90 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bucket and percentile math of {@link LatencyHistogram} with known inputs.
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void percentilesOfOneToHundred() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 100; i >= 1; i--) {
+      histogram.record(i);
+    }
+    assertEquals(100, histogram.count());
+    assertEquals(100, histogram.max());
+    assertEquals(50.5, histogram.mean(), 1e-9);
+    // 50 is in bucket [48, 52), 99 in [96, 104) which is capped at the max
+    assertEquals(50, histogram.percentile(0.5));
+    assertEquals(100, histogram.percentile(0.99));
+    assertEquals(100, histogram.percentile(1));
+    assertEquals(1, histogram.percentile(0));
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < LatencyHistogram.SUB; i++) {
+      histogram.record(i);
+    }
+    assertEquals(3, histogram.percentile(0.5));
+    assertEquals(7, histogram.percentile(0.99));
+    assertEquals(7, histogram.max());
+  }
+
+  @Test
+  public void percentileIsTheBucketMiddleButNeverOverTheMax() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(1000);
+    // [960, 1024)
+    assertEquals(992, histogram.percentile(0.5));
+    assertEquals(1000, histogram.max());
+
+    histogram.record(970);
+    histogram.record(5_000_000);
+    assertEquals(992, histogram.percentile(0.5));
+    // [4718592, 5242880)
+    assertEquals(4_980_736, histogram.percentile(0.99));
+    assertEquals(5_000_000, histogram.max());
+  }
+
+  @Test
+  public void bucketsAreWithinAnEighthOfTheValue() {
+    long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 100, 1023, 1024, 123_456, 60_000_000, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+    for (long value : values) {
+      int bucket = LatencyHistogram.bucket(value);
+      assertTrue(value + " in bucket " + bucket, bucket >= 0 && bucket < LatencyHistogram.BUCKETS);
+      long low = LatencyHistogram.lowerBound(bucket);
+      assertTrue(value + " >= " + low, value >= low);
+      if (bucket + 1 < LatencyHistogram.BUCKETS) {
+        long high = LatencyHistogram.lowerBound(bucket + 1);
+        assertTrue(value + " < " + high, value < high);
+        assertTrue(value + ": [" + low + ", " + high + ")", high - low <= Math.max(1, low / LatencyHistogram.SUB));
+      }
+    }
+    for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++) {
+      assertEquals(bucket, LatencyHistogram.bucket(LatencyHistogram.lowerBound(bucket)));
+    }
+  }
+
+  @Test
+  public void emptyNegativeAndReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.percentile(0.5));
+    assertEquals(0, histogram.mean(), 0);
+
+    histogram.record(-5);
+    assertEquals(1, histogram.count());
+    assertEquals(0, histogram.max());
+    assertEquals(0, histogram.percentile(0.99));
+
+    histogram.record(400);
+    histogram.reset();
+    assertEquals(0, histogram.count());
+    assertEquals(0, histogram.max());
+    assertEquals(0, histogram.percentile(0.5));
+  }
+}
@@ -0,0 +1,503 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded stand-in for the CoWIN API, for offline load and regression runs.
+ * <p>
+ * Serves OTP, beneficiaries, calendarByDistrict/Pin, findByDistrict, findByPin, getRecaptcha,
+ * schedule and reschedule under {@code http://localhost:<port>/api}. All centers are full until
+ * -Dmock.publishAfterMs, then one center opens an 18+ session on every date. Every response can
+ * be delayed (-Dmock.latencyMs, -Dmock.jitterMs), calls over -Dmock.limitCalls per
+ * -Dmock.limitWindowSec get a 403, and -Dmock.forbiddenAt=5,6,7 scripts 403s for given call
+ * numbers. Captchas are the bundled sample captcha.
+ * <p>
+ * The server measures how long after publishing the slot the client saw it, asked for a captcha
+ * and sent the schedule request, see {@code GET /mock/metrics} or the report printed on exit.
+ * <p>
+ * java MockCowinServer [port] and run the client with -Dcowin.baseUrl=http://localhost:port/api,
+ * or java MockCowinServer run Runner|Runner2 to run the client in-process with scripted answers.
+ * It is part of the test classes (not packaged), {@link MockCowinServerTest} runs both clients
+ * against it.
+ */
+public class MockCowinServer implements AutoCloseable {
+
+  static final int PORT = Integer.getInteger("mock.port", 8080);
+  static final long PUBLISH_AFTER_MS = Long.getLong("mock.publishAfterMs", 10_000);
+  static final long LATENCY_MS = Long.getLong("mock.latencyMs", 0);
+  static final long JITTER_MS = Long.getLong("mock.jitterMs", 0);
+  static final int CENTERS = Integer.getInteger("mock.centers", 50);
+  static final int CAPACITY = Integer.getInteger("mock.capacity", 10);
+  static final int LIMIT_CALLS = Integer.getInteger("mock.limitCalls", 100);
+  static final long LIMIT_WINDOW_MS = TimeUnit.SECONDS.toMillis(Long.getLong("mock.limitWindowSec", 300));
+  static final long TOKEN_TTL_SEC = Long.getLong("mock.tokenTtlSec", 900);
+  static final String CAPTCHA_ANSWER = System.getProperty("mock.captchaAnswer", SvgCaptchaDecoder.SAMPLE_ANSWER);
+
+  static final String PATTERN = "dd-MM-yyyy";
+  static final String[] VACCINES = {"COVISHIELD", "COVAXIN"};
+  static final String[] SLOTS = {"09:00AM-11:00AM", "11:00AM-01:00PM", "01:00PM-03:00PM", "03:00PM-05:00PM"};
+  static final String BENEFICIARY_ID = "12345678901234";
+
+  private final ObjectMapper jsonMapper = new ObjectMapper();
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+    Thread t = new Thread(r, "mock-cowin");
+    t.setDaemon(true);
+    return t;
+  });
+  private final String captchaSvg;
+  private final int openCenter = CENTERS / 2;
+
+  private final Set<String> tokens = ConcurrentHashMap.newKeySet();
+  private final Map<String, Integer> remaining = new ConcurrentHashMap<>();
+  private final Set<Integer> forbiddenAt = new HashSet<>();
+  private final ArrayDeque<Long> window = new ArrayDeque<>();
+  private final AtomicInteger calls = new AtomicInteger();
+  private final AtomicInteger forbidden = new AtomicInteger();
+  private final AtomicInteger unauthorized = new AtomicInteger();
+
+  private final long startedAt = System.currentTimeMillis();
+  private final long publishAfterMs;
+  private final long publishAt;
+  // first time (epoch ms) the client did each step after the slot was published
+  private final AtomicLong slotSeenAt = new AtomicLong();
+  private final AtomicLong captchaAt = new AtomicLong();
+  private final AtomicLong scheduleAt = new AtomicLong();
+  private final AtomicLong bookedAt = new AtomicLong();
+
+  public MockCowinServer(int port) throws IOException {
+    this(port, PUBLISH_AFTER_MS, System.getProperty("mock.forbiddenAt", ""));
+  }
+
+  /**
+   * @param forbiddenAt call numbers to answer with a 403, comma separated
+   */
+  public MockCowinServer(int port, long publishAfterMs, String forbiddenAt) throws IOException {
+    this.publishAfterMs = publishAfterMs;
+    this.publishAt = startedAt + publishAfterMs;
+    for (String call : forbiddenAt.split(",")) {
+      if (!call.trim().isEmpty()) {
+        this.forbiddenAt.add(Integer.parseInt(call.trim()));
+      }
+    }
+    try (InputStream in = MockCowinServer.class.getResourceAsStream("/captcha-sample.svg")) {
+      captchaSvg = IOUtils.toString(in, StandardCharsets.UTF_8);
+    }
+    server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+    server.createContext("/api/", this::handle);
+    server.createContext("/mock/metrics", exchange -> send(exchange, 200, metrics()));
+    server.setExecutor(executor);
+    server.start();
+    System.out.println("Mock CoWIN API on " + baseUrl() + ", slot opens at center " + centerId(openCenter)
+        + " in " + publishAfterMs + " ms");
+  }
+
+  public String baseUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + "/api";
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      long delay = LATENCY_MS + (JITTER_MS > 0 ? ThreadLocalRandom.current().nextLong(JITTER_MS + 1) : 0);
+      if (delay > 0) {
+        Thread.sleep(delay);
+      }
+      if (!allow()) {
+        forbidden.incrementAndGet();
+        send(exchange, 403, "Forbidden");
+        return;
+      }
+      String path = exchange.getRequestURI().getPath().substring("/api".length());
+      Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+      byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+      boolean open = path.startsWith("/v2/auth/") && !path.equals("/v2/auth/getRecaptcha") || path.contains("/public/");
+      if (!open && !authorized(exchange)) {
+        unauthorized.incrementAndGet();
+        send(exchange, 401, "Unauthenticated access!");
+        return;
+      }
+      switch (path) {
+        case "/v2/auth/generateMobileOTP":
+          send(exchange, 200, Collections.singletonMap("txnId", UUID.randomUUID().toString()));
+          break;
+        case "/v2/auth/validateMobileOtp":
+          send(exchange, 200, Collections.singletonMap("token", newToken()));
+          break;
+        case "/v2/appointment/beneficiaries":
+          send(exchange, 200, Collections.singletonMap("beneficiaries", Collections.singletonList(beneficiary())));
+          break;
+        case "/v2/appointment/sessions/calendarByDistrict":
+        case "/v2/appointment/sessions/calendarByPin":
+          send(exchange, 200, calendar(query.get("date")));
+          break;
+        case "/v2/appointment/sessions/findByDistrict":
+        case "/v2/appointment/sessions/public/findByDistrict":
+        case "/v2/appointment/sessions/public/findByPin":
+          send(exchange, 200, sessions(query.get("date")));
+          break;
+        case "/v2/auth/getRecaptcha":
+          mark(captchaAt);
+          send(exchange, 200, Collections.singletonMap("captcha", captchaSvg));
+          break;
+        case "/v2/appointment/schedule":
+        case "/v2/appointment/reschedule":
+          book(exchange, path.endsWith("reschedule"), body);
+          break;
+        default:
+          send(exchange, 404, "Not found");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      e.printStackTrace();
+      send(exchange, 500, "Internal error");
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private synchronized boolean allow() {
+    int call = calls.incrementAndGet();
+    if (forbiddenAt.contains(call)) {
+      return false;
+    }
+    long now = System.currentTimeMillis();
+    while (!window.isEmpty() && window.peekFirst() <= now - LIMIT_WINDOW_MS) {
+      window.pollFirst();
+    }
+    if (window.size() >= LIMIT_CALLS) {
+      return false;
+    }
+    window.addLast(now);
+    return true;
+  }
+
+  private boolean authorized(HttpExchange exchange) {
+    String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+    if (authorization == null || !authorization.startsWith("Bearer ")) {
+      return false;
+    }
+    String token = authorization.substring("Bearer ".length());
+    return tokens.contains(token) && System.currentTimeMillis() < TokenManager.expiryOf(token);
+  }
+
+  private String newToken() {
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    long exp = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + TOKEN_TTL_SEC;
+    String header = encoder.encodeToString("{\"alg\":\"none\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+    String payload = encoder.encodeToString(("{\"user_name\":\"" + UUID.randomUUID() + "\",\"exp\":" + exp + "}")
+        .getBytes(StandardCharsets.UTF_8));
+    String token = header + "." + payload + ".mock";
+    tokens.add(token);
+    return token;
+  }
+
+  private Map<String, Object> beneficiary() {
+    Map<String, Object> b = new LinkedHashMap<>();
+    b.put("beneficiary_reference_id", BENEFICIARY_ID);
+    b.put("name", "Mock Beneficiary");
+    b.put("birth_year", "1990");
+    b.put("gender", "Female");
+    b.put("mobile_number", "9999");
+    b.put("photo_id_type", "Aadhaar Card");
+    b.put("photo_id_number", "XXXXXXXX1234");
+    b.put("comorbidity_ind", "N");
+    b.put("vaccination_status", "Not Vaccinated");
+    b.put("vaccine", "");
+    b.put("dose1_date", "");
+    b.put("dose2_date", "");
+    b.put("appointments", Collections.emptyList());
+    return b;
+  }
+
+  private Map<String, Object> calendar(String date) {
+    List<String> dates = dates(date, 7);
+    List<Object> centers = new ArrayList<>(CENTERS);
+    for (int c = 0; c < CENTERS; c++) {
+      Map<String, Object> center = center(c);
+      List<Object> sessions = new ArrayList<>(dates.size());
+      for (String d : dates) {
+        sessions.add(session(c, d));
+      }
+      center.put("sessions", sessions);
+      centers.add(center);
+    }
+    return Collections.singletonMap("centers", centers);
+  }
+
+  private Map<String, Object> sessions(String date) {
+    String d = dates(date, 1).get(0);
+    List<Object> sessions = new ArrayList<>(CENTERS);
+    for (int c = 0; c < CENTERS; c++) {
+      Map<String, Object> session = center(c);
+      session.putAll(session(c, d));
+      sessions.add(session);
+    }
+    return Collections.singletonMap("sessions", sessions);
+  }
+
+  private Map<String, Object> center(int c) {
+    Map<String, Object> center = new LinkedHashMap<>();
+    center.put("center_id", centerId(c));
+    center.put("name", "Mock Centre " + c);
+    center.put("address", "Ward " + c + ", Main Road");
+    center.put("state_name", "Karnataka");
+    center.put("district_name", "BBMP");
+    center.put("block_name", "South");
+    center.put("pincode", 560001 + c);
+    center.put("lat", 12);
+    center.put("long", 77);
+    center.put("from", "09:00:00");
+    center.put("to", "17:00:00");
+    center.put("fee_type", "Free");
+    return center;
+  }
+
+  private Map<String, Object> session(int c, String date) {
+    String sessionId = "mock-" + centerId(c) + "-" + date;
+    boolean open = c == openCenter && System.currentTimeMillis() >= publishAt;
+    int capacity = open ? remaining.computeIfAbsent(sessionId, k -> CAPACITY) : 0;
+    if (open && capacity > 0) {
+      mark(slotSeenAt);
+    }
+    Map<String, Object> session = new LinkedHashMap<>();
+    session.put("session_id", sessionId);
+    session.put("date", date);
+    session.put("available_capacity", capacity);
+    session.put("available_capacity_dose1", capacity);
+    session.put("available_capacity_dose2", capacity);
+    session.put("fee", "0");
+    // the open center has the 18+ session, the others are 45+ or full
+    session.put("min_age_limit", c == openCenter || c % 2 == 0 ? 18 : 45);
+    session.put("vaccine", VACCINES[c % VACCINES.length]);
+    session.put("slots", Arrays.asList(SLOTS));
+    return session;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void book(HttpExchange exchange, boolean reschedule, byte[] body) throws IOException {
+    mark(scheduleAt);
+    Map<String, Object> request = jsonMapper.readValue(body, Map.class);
+    if (!CAPTCHA_ANSWER.equals(request.get("captcha"))) {
+      send(exchange, 400, error("APPOIN0044", "Please enter valid security code"));
+      return;
+    }
+    String sessionId = String.valueOf(request.get("session_id"));
+    Object beneficiaries = request.get("beneficiaries");
+    int count = beneficiaries instanceof List ? ((List<?>) beneficiaries).size() : 1;
+    // sessions only get a capacity entry once they are published
+    boolean[] booked = {false};
+    remaining.computeIfPresent(sessionId, (k, v) -> {
+      booked[0] = v >= count;
+      return booked[0] ? v - count : v;
+    });
+    if (!booked[0]) {
+      send(exchange, 409, error("APPOIN0040", "This vaccination center is completely booked for the selected date."));
+      return;
+    }
+    mark(bookedAt);
+    System.out.println("Mock CoWIN: booked " + sessionId + " " + request.get("slot"));
+    System.out.println(report());
+    if (reschedule) {
+      send(exchange, 204, null);
+    } else {
+      send(exchange, 200, Collections.singletonMap("appointment_confirmation_no", UUID.randomUUID().toString()));
+    }
+  }
+
+  private static Map<String, Object> error(String code, String message) {
+    Map<String, Object> error = new HashMap<>();
+    error.put("errorCode", code);
+    error.put("error", message);
+    return error;
+  }
+
+  private void mark(AtomicLong step) {
+    long now = System.currentTimeMillis();
+    if (now >= publishAt) {
+      step.compareAndSet(0, now);
+    }
+  }
+
+  /**
+   * Milliseconds from publishing the slot to each client step, -1 if it has not happened yet.
+   */
+  public Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("published", System.currentTimeMillis() >= publishAt);
+    metrics.put("publish_to_slot_seen_ms", since(slotSeenAt));
+    metrics.put("publish_to_captcha_ms", since(captchaAt));
+    metrics.put("publish_to_schedule_ms", since(scheduleAt));
+    metrics.put("publish_to_booked_ms", since(bookedAt));
+    metrics.put("calls", calls.get());
+    metrics.put("forbidden", forbidden.get());
+    metrics.put("unauthorized", unauthorized.get());
+    return metrics;
+  }
+
+  private long since(AtomicLong step) {
+    long at = step.get();
+    return at == 0 ? -1 : at - publishAt;
+  }
+
+  public String report() {
+    Map<String, Object> m = metrics();
+    return "Mock CoWIN report: publish -> slot seen " + m.get("publish_to_slot_seen_ms") + " ms, -> captcha "
+        + m.get("publish_to_captcha_ms") + " ms, -> schedule POST " + m.get("publish_to_schedule_ms") + " ms, -> booked "
+        + m.get("publish_to_booked_ms") + " ms; calls " + m.get("calls") + ", 403s " + m.get("forbidden") + ", 401s "
+        + m.get("unauthorized");
+  }
+
+  private void send(HttpExchange exchange, int code, Object body) throws IOException {
+    byte[] bytes = body == null ? new byte[0]
+        : body instanceof String ? ((String) body).getBytes(StandardCharsets.UTF_8) : jsonMapper.writeValueAsBytes(body);
+    exchange.getResponseHeaders().set("Content-Type", body instanceof String ? "text/plain" : "application/json");
+    exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+    if (bytes.length > 0) {
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(bytes);
+      }
+    }
+  }
+
+  private static int centerId(int c) {
+    return 600000 + c;
+  }
+
+  private static List<String> dates(String from, int days) {
+    SimpleDateFormat format = new SimpleDateFormat(PATTERN);
+    Calendar calendar = Calendar.getInstance();
+    try {
+      if (from != null) {
+        calendar.setTime(format.parse(from));
+      }
+    } catch (java.text.ParseException e) {
+      // fall back to today
+    }
+    List<String> dates = new ArrayList<>(days);
+    for (int i = 0; i < days; i++) {
+      dates.add(format.format(calendar.getTime()));
+      calendar.add(Calendar.DAY_OF_MONTH, 1);
+    }
+    return dates;
+  }
+
+  private static Map<String, String> query(String rawQuery) throws IOException {
+    Map<String, String> query = new HashMap<>();
+    if (rawQuery == null) {
+      return query;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq > 0) {
+        query.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+      }
+    }
+    return query;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  /**
+   * Console input that hands out one scripted answer per read, so each of the client's
+   * Scanners only consumes the answer to its own prompt. The last answer (the OTP) repeats.
+   */
+  static final class ScriptedConsole extends InputStream {
+    private final List<String> answers;
+    private int next;
+    private InputStream current = new ByteArrayInputStream(new byte[0]);
+
+    ScriptedConsole(String... answers) {
+      this.answers = Arrays.asList(answers);
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+      if (current.available() == 0) {
+        String answer = answers.get(Math.min(next++, answers.size() - 1));
+        System.out.println("> " + answer);
+        current = new ByteArrayInputStream((answer + "\n").getBytes(StandardCharsets.UTF_8));
+      }
+      return current.read(b, off, len);
+    }
+  }
+
+  private static void setDefault(String key, String value) {
+    if (System.getProperty(key) == null) {
+      System.setProperty(key, value);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    // java MockCowinServer run Runner|Runner2: client in this JVM against the mock, with scripted answers
+    if (args.length > 0 && args[0].equals("run")) {
+      String client = args.length > 1 ? args[1] : "Runner2";
+      MockCowinServer mock = new MockCowinServer(0);
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(mock.report())));
+      // must be set before the client class is loaded, it reads the base url once
+      System.setProperty("cowin.baseUrl", mock.baseUrl());
+      // startup answers are configured (see Prompts), only OTPs are typed
+      setDefault("cowin.mobile", "9999999999");
+      setDefault("cowin.beneficiaries", "all");
+      setDefault("cowin.vaccine", "any");
+      setDefault("cowin.fee", "any");
+      setDefault("session.file", new File(System.getProperty("java.io.tmpdir"), "mock-session.json").getPath());
+      setDefault("session.reset", "true");
+      // the captchas are the bundled sample: submit them decoded, and learn them apart from real ones
+      setDefault("captcha.svgSubmit", "always");
+      setDefault("captcha.templates", new File(System.getProperty("java.io.tmpdir"), "mock-captcha-templates.json").getPath());
+      System.setIn(new ScriptedConsole("123456"));
+      Method main = Class.forName(client).getMethod("main", String[].class);
+      main.invoke(null, (Object) new String[0]);
+      return;
+    }
+
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT;
+    MockCowinServer mock = new MockCowinServer(port);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(mock.report())));
+    System.out.println("Run the client with -Dcowin.baseUrl=" + mock.baseUrl());
+    Thread.currentThread().join();
+  }
+}
@@ -0,0 +1,93 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Books the mock slot end to end: {@link MockCowinServer} on an ephemeral port and the client in its
+ * own JVM (it exits once booked) pointed at it with -Dcowin.baseUrl. A scripted 403 costs the
+ * client its minimum back-off of 10 s, so only the Runner2 run gets one.
+ */
+public class MockCowinServerTest {
+
+  static final long PUBLISH_AFTER_MS = 2000;
+  static final long TIMEOUT_SEC = 60;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void runnerBooks() throws Exception {
+    book("Runner", "", 0);
+  }
+
+  @Test
+  public void runner2BooksThroughA403() throws Exception {
+    // call 4 is the first poll, after OTP, login and beneficiaries
+    book("Runner2", "4", 1);
+  }
+
+  private void book(String client, String forbiddenAt, int forbidden) throws Exception {
+    try (MockCowinServer mock = new MockCowinServer(0, PUBLISH_AFTER_MS, forbiddenAt)) {
+      File dir = folder.newFolder(client);
+      File log = new File(dir, "client.log");
+      Process process = start(client, mock.baseUrl(), dir, log);
+      if (!process.waitFor(TIMEOUT_SEC, TimeUnit.SECONDS)) {
+        process.destroyForcibly();
+        fail(client + " did not book within " + TIMEOUT_SEC + " s, " + mock.report() + "\n" + read(log));
+      }
+      String output = read(log);
+      assertEquals(output, 0, process.exitValue());
+      assertTrue(output, output.contains("Appointment booked"));
+
+      Map<String, Object> metrics = mock.metrics();
+      assertEquals(output, forbidden, metrics.get("forbidden"));
+      long schedule = ((Number) metrics.get("publish_to_schedule_ms")).longValue();
+      long booked = ((Number) metrics.get("publish_to_booked_ms")).longValue();
+      assertTrue(mock.report(), schedule >= 0);
+      assertTrue(mock.report(), booked >= schedule);
+    }
+  }
+
+  private static Process start(String client, String baseUrl, File dir, File log) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+    command.add("-Dcowin.baseUrl=" + baseUrl);
+    // the answers MockCowinServer run would configure, plus the district prompt
+    command.add("-Dcowin.mobile=9999999999");
+    command.add("-Dcowin.district=294");
+    command.add("-Dcowin.beneficiaries=all");
+    command.add("-Dcowin.vaccine=any");
+    command.add("-Dcowin.fee=any");
+    command.add("-Dcaptcha.svgSubmit=always");
+    command.add("-Dheadless=true");
+    command.add("-Dwarmup=false");
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(client);
+    // session.json, poll-stats.json and captcha-templates.json go to the working directory
+    Process process = new ProcessBuilder(command).directory(dir).redirectErrorStream(true)
+        .redirectOutput(log).start();
+    try (OutputStream otp = process.getOutputStream()) {
+      otp.write("123456\n123456\n123456\n".getBytes(StandardCharsets.UTF_8));
+    }
+    return process;
+  }
+
+  private static String read(File log) throws IOException {
+    return new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,57 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * {@link SessionSnapshot} classification across consecutive polls of one query.
+ */
+public class SessionSnapshotTest {
+
+  @Test
+  public void classifiesChangesAgainstThePreviousPoll() {
+    SessionSnapshot snapshot = new SessionSnapshot();
+    snapshot.begin();
+    assertEquals(SessionSnapshot.Delta.OPENED, snapshot.observe("a", 5));
+    assertEquals(SessionSnapshot.Delta.OPENED, snapshot.observe("b", 2));
+    assertEquals(0, snapshot.end());
+    assertEquals(0, snapshot.releases());
+
+    snapshot.begin();
+    assertEquals(SessionSnapshot.Delta.UNCHANGED, snapshot.observe("a", 5));
+    assertEquals(SessionSnapshot.Delta.INCREASED, snapshot.observe("b", 4));
+    assertEquals(0, snapshot.end());
+    assertEquals(1, snapshot.releases());
+
+    snapshot.begin();
+    assertEquals(SessionSnapshot.Delta.DECREASED, snapshot.observe("a", 3));
+    assertEquals(1, snapshot.end());
+    assertEquals(1, snapshot.size());
+
+    // b was dropped by the previous poll, so it is new again
+    snapshot.begin();
+    assertEquals(SessionSnapshot.Delta.OPENED, snapshot.observe("b", 1));
+    assertEquals(1, snapshot.end());
+    assertEquals(1, snapshot.releases());
+    assertEquals(1, snapshot.size());
+  }
+
+  @Test
+  public void keepsSessionsWhenTheTableGrows() {
+    SessionSnapshot snapshot = new SessionSnapshot();
+    snapshot.begin();
+    for (int i = 0; i < 1000; i++) {
+      snapshot.observe("session-" + i, i % 7 + 1);
+    }
+    assertEquals(0, snapshot.end());
+    assertEquals(1000, snapshot.size());
+
+    snapshot.begin();
+    for (int i = 0; i < 1000; i++) {
+      SessionSnapshot.Delta delta = snapshot.observe("session-" + i, i % 7 + 1);
+      assertEquals("session-" + i, SessionSnapshot.Delta.UNCHANGED, delta);
+      assertFalse(delta.bookable());
+    }
+    assertEquals(0, snapshot.end());
+  }
+}
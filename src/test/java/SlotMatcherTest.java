@@ -0,0 +1,229 @@
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link SlotMatcher} must pick the same sessions as decoding the whole response with Jackson and
+ * filtering the objects, which is what Runner and Runner2 did before.
+ */
+public class SlotMatcherTest {
+
+  private static final ObjectMapper jsonMapper = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  private static final String[] VACCINES = {"COVISHIELD", "COVAXIN", "SPUTNIK V"};
+  private static final String[] FEE_TYPES = {"Free", "Paid"};
+
+  private static final List<Filter> FILTERS = Arrays.asList(
+      new Filter(18, 2, null, "Free"),
+      new Filter(18, 1, "COVAXIN", null),
+      new Filter(45, 1, "COVISHIELD", "Paid"),
+      new Filter(18, 5, null, null));
+
+  /**
+   * Matcher settings plus the filter lambdas of the old Runner/Runner2 loops.
+   */
+  private static final class Filter {
+    final int minAge;
+    final int minCapacity;
+    final String vaccine;
+    final String feeType;
+
+    Filter(int minAge, int minCapacity, String vaccine, String feeType) {
+      this.minAge = minAge;
+      this.minCapacity = minCapacity;
+      this.vaccine = vaccine;
+      this.feeType = feeType;
+    }
+
+    SlotMatcher matcher(int dose) {
+      return new SlotMatcher(minAge, minCapacity, dose, vaccine, feeType);
+    }
+
+    boolean matches(int age, String vaccine, String feeType, int capacity) {
+      return age == minAge
+          && (this.vaccine == null || this.vaccine.equalsIgnoreCase(vaccine))
+          && (this.feeType == null || this.feeType.equalsIgnoreCase(feeType))
+          && capacity >= minCapacity;
+    }
+
+    @Override
+    public String toString() {
+      return "Filter(" + minAge + ", " + minCapacity + ", " + vaccine + ", " + feeType + ")";
+    }
+  }
+
+  @Test
+  public void feeTypeAfterSessionsIsAppliedOnceTheCenterIsComplete() throws IOException {
+    String body = "{\"centers\":["
+        + "{\"center_id\":1,\"name\":\"late free\",\"sessions\":[" + session("a", 5, 18, "COVAXIN") + "],\"fee_type\":\"Free\"},"
+        + "{\"center_id\":2,\"name\":\"late paid\",\"sessions\":[" + session("b", 5, 18, "COVAXIN") + "],\"fee_type\":\"Paid\"},"
+        + "{\"center_id\":3,\"name\":\"early free\",\"fee_type\":\"Free\",\"sessions\":[" + session("c", 5, 18, "COVAXIN") + "]}"
+        + "]}";
+    List<String> matched = new ArrayList<>();
+    List<Center> centers = new ArrayList<>();
+    int count = new SlotMatcher(18, 1, 0, null, "Free").matchCalendar(stream(body), (center, session) -> {
+      matched.add(session.session_id);
+      centers.add(center);
+    });
+    assertEquals(2, count);
+    assertEquals(Arrays.asList("a", "c"), matched);
+    assertEquals("Free", centers.get(0).fee_type);
+    assertEquals(1, centers.get(0).sessions.size());
+  }
+
+  @Test
+  public void filtersByAgeVaccineAndFee() throws IOException {
+    String body = "{\"centers\":["
+        + "{\"center_id\":1,\"fee_type\":\"Free\",\"sessions\":["
+        + session("age45", 5, 45, "COVAXIN") + "," + session("covishield", 5, 18, "COVISHIELD") + ","
+        + session("full", 0, 18, "COVAXIN") + "," + session("ok", 5, 18, "covaxin") + "]},"
+        + "{\"center_id\":2,\"fee_type\":\"Paid\",\"sessions\":[" + session("paid", 5, 18, "COVAXIN") + "]}"
+        + "]}";
+    assertEquals(Arrays.asList("ok"), matchCalendar(new SlotMatcher(18, 1, 0, "COVAXIN", "Free"), body));
+    assertEquals(Arrays.asList("ok", "paid"), matchCalendar(new SlotMatcher(18, 1, 0, "COVAXIN", null), body));
+    assertEquals(Arrays.asList("covishield", "ok"), matchCalendar(new SlotMatcher(18, 1, 0, "", "Free"), body));
+    assertEquals(Arrays.asList("age45"), matchCalendar(new SlotMatcher(45, 1, 0, null, null), body));
+  }
+
+  @Test
+  public void capacityOfPicksTheDoseSpecificCapacity() {
+    assertEquals(7, SlotMatcher.capacityOf(0, 7, 3, 4));
+    assertEquals(3, SlotMatcher.capacityOf(1, 7, 3, 4));
+    assertEquals(4, SlotMatcher.capacityOf(2, 7, 3, 4));
+    assertEquals(0, SlotMatcher.capacityOf(1, 4, 0, 4));
+    // responses without the per-dose fields fall back to available_capacity
+    assertEquals(7, SlotMatcher.capacityOf(1, 7, 0, 0));
+    assertEquals(7, SlotMatcher.capacityOf(2, 7, 0, 0));
+    assertEquals(0, SlotMatcher.capacityOf(2, 0, 0, 0));
+  }
+
+  @Test
+  public void calendarMatchesJacksonFiltering() throws IOException {
+    Random random = new Random(7);
+    for (int round = 0; round < 20; round++) {
+      String body = calendar(random, 1 + random.nextInt(30));
+      for (Filter filter : FILTERS) {
+        assertEquals("round " + round + " " + filter, legacyCalendar(body, filter), matchCalendar(filter.matcher(0), body));
+      }
+    }
+  }
+
+  @Test
+  public void findByDistrictMatchesJacksonFiltering() throws IOException {
+    Random random = new Random(11);
+    for (int round = 0; round < 20; round++) {
+      String body = sessions(random, 1 + random.nextInt(100));
+      for (int dose = 0; dose <= 2; dose++) {
+        for (Filter filter : FILTERS) {
+          List<String> matched = new ArrayList<>();
+          filter.matcher(dose).matchSessions(stream(body), session -> {
+            assertEquals(2, session.slots.size());
+            matched.add(session.session_id);
+          });
+          assertEquals("round " + round + " dose " + dose + " " + filter, legacySessions(body, dose, filter), matched);
+        }
+      }
+    }
+  }
+
+  private static List<String> matchCalendar(SlotMatcher matcher, String body) throws IOException {
+    List<String> matched = new ArrayList<>();
+    matcher.matchCalendar(stream(body), (center, session) -> matched.add(session.session_id));
+    return matched;
+  }
+
+  // the decode-then-filter path the matcher replaced, in document order
+  private static List<String> legacyCalendar(String body, Filter filter) throws IOException {
+    Root root = jsonMapper.readValue(body, Root.class);
+    List<String> matched = new ArrayList<>();
+    for (Center center : root.centers) {
+      for (Session session : center.sessions) {
+        if (filter.matches(session.min_age_limit, session.vaccine, center.fee_type, session.available_capacity)) {
+          matched.add(session.session_id);
+        }
+      }
+    }
+    return matched;
+  }
+
+  private static List<String> legacySessions(String body, int dose, Filter filter) throws IOException {
+    Runner2.Root1 root = jsonMapper.readValue(body, Runner2.Root1.class);
+    List<String> matched = new ArrayList<>();
+    for (Runner2.Session1 session : root.sessions) {
+      int capacity = SlotMatcher.capacityOf(dose, session.available_capacity, session.available_capacity_dose1,
+          session.available_capacity_dose2);
+      if (filter.matches(session.min_age_limit, session.vaccine, session.fee_type, capacity)) {
+        matched.add(session.session_id);
+      }
+    }
+    return matched;
+  }
+
+  private static String calendar(Random random, int centers) {
+    StringBuilder sb = new StringBuilder("{\"centers\":[");
+    for (int c = 0; c < centers; c++) {
+      sb.append(c == 0 ? "" : ",").append("{\"center_id\":").append(c).append(",\"name\":\"Centre ").append(c)
+          .append("\",\"pincode\":5600").append(10 + c);
+      String fee = "\"fee_type\":\"" + FEE_TYPES[random.nextInt(2)] + "\"";
+      boolean feeLast = random.nextBoolean();
+      if (!feeLast) {
+        sb.append(',').append(fee);
+      }
+      sb.append(",\"sessions\":[");
+      int sessions = random.nextInt(8);
+      for (int s = 0; s < sessions; s++) {
+        sb.append(s == 0 ? "" : ",").append(randomSession(random, c + "-" + s, false));
+      }
+      sb.append(']');
+      if (feeLast) {
+        sb.append(',').append(fee);
+      }
+      sb.append('}');
+    }
+    return sb.append("]}").toString();
+  }
+
+  private static String sessions(Random random, int sessions) {
+    StringBuilder sb = new StringBuilder("{\"sessions\":[");
+    for (int s = 0; s < sessions; s++) {
+      sb.append(s == 0 ? "" : ",").append(randomSession(random, "s" + s, true));
+    }
+    return sb.append("]}").toString();
+  }
+
+  private static String randomSession(Random random, String id, boolean flat) {
+    int dose1 = random.nextInt(3) == 0 ? random.nextInt(6) : 0;
+    int dose2 = random.nextInt(3) == 0 ? random.nextInt(6) : 0;
+    int capacity = dose1 + dose2 + (random.nextInt(4) == 0 ? random.nextInt(4) : 0);
+    StringBuilder sb = new StringBuilder("{");
+    if (flat) {
+      sb.append("\"center_id\":").append(random.nextInt(1000)).append(",\"name\":\"Centre\",\"fee_type\":\"")
+          .append(FEE_TYPES[random.nextInt(2)]).append("\",");
+    }
+    return sb.append("\"session_id\":\"").append(id).append("\",\"date\":\"10-06-2021\",\"available_capacity\":")
+        .append(capacity).append(",\"available_capacity_dose1\":").append(dose1)
+        .append(",\"available_capacity_dose2\":").append(dose2).append(",\"fee\":\"0\",\"min_age_limit\":")
+        .append(random.nextBoolean() ? 18 : 45).append(",\"vaccine\":\"").append(VACCINES[random.nextInt(VACCINES.length)])
+        .append("\",\"slots\":[\"09:00AM-11:00AM\",\"11:00AM-01:00PM\"]}").toString();
+  }
+
+  private static String session(String id, int capacity, int age, String vaccine) {
+    return "{\"session_id\":\"" + id + "\",\"date\":\"10-06-2021\",\"available_capacity\":" + capacity
+        + ",\"min_age_limit\":" + age + ",\"vaccine\":\"" + vaccine + "\",\"slots\":[\"09:00AM-11:00AM\"]}";
+  }
+
+  private static ByteArrayInputStream stream(String body) {
+    return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,219 @@
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link SvgCaptchaDecoder} against the bundled sample captcha (answer EPgES).
+ */
+public class SvgCaptchaDecoderTest {
+
+  // a 2 contour glyph that is not in the sample (a square ring, like an 'O')
+  private static final String RING = "M0 0L20 0L20 30L0 30ZM5 5L5 25L15 25L15 5Z";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void skipsNoisePaths() throws IOException {
+    String svg = "<svg><path d=\"M16 45 C91 45,88 29,148 29\" stroke=\"#444\" fill=\"none\"/>"
+        + "<path fill=\"#222\"/>"
+        + "<path fill=\"#333\" d=\"" + RING + "\"/>"
+        + "<path d=\"M1 40 C51 4,88 29,148 2\" fill=\"none\" stroke=\"#777\"/></svg>";
+    List<double[]> glyphs = SvgCaptchaDecoder.glyphs(svg);
+    assertEquals(1, glyphs.size());
+    assertEquals(2, glyphs.get(0)[1], 0);
+
+    assertEquals(5, SvgCaptchaDecoder.glyphs(sample()).size());
+  }
+
+  @Test
+  public void ordersGlyphsLeftToRight() throws IOException {
+    List<String> paths = glyphPaths(sample());
+    // the sample does not draw its glyphs left to right either
+    StringBuilder reversed = new StringBuilder("<svg>");
+    for (int i = paths.size() - 1; i >= 0; i--) {
+      reversed.append("<path fill=\"#111\" d=\"").append(paths.get(i)).append("\"/>");
+    }
+    reversed.append("</svg>");
+
+    double x = -1;
+    for (double[] glyph : SvgCaptchaDecoder.glyphs(reversed.toString())) {
+      assertTrue(glyph[0] > x);
+      x = glyph[0];
+    }
+    SvgCaptchaDecoder decoder = SvgCaptchaDecoder.load(null);
+    assertEquals(SvgCaptchaDecoder.SAMPLE_ANSWER, decoder.decode(reversed.toString()));
+  }
+
+  @Test
+  public void signatureIgnoresPositionAndSize() throws IOException {
+    for (String path : glyphPaths(sample())) {
+      double[] glyph = SvgCaptchaDecoder.signature(path);
+      double[] moved = SvgCaptchaDecoder.signature(transform(path, 0, 0.6, 40));
+      assertEquals(0.6 * glyph[0] + 40, moved[0], 0.05);
+      assertEquals(0, SvgCaptchaDecoder.distance(glyph, moved), 0.05);
+    }
+    assertEquals(1, SvgCaptchaDecoder.signature("M0 0L10 0L10 10Z")[1], 0);
+    assertEquals(2, SvgCaptchaDecoder.signature(RING)[1], 0);
+    // a different number of contours never matches
+    assertEquals(Double.MAX_VALUE, SvgCaptchaDecoder.distance(SvgCaptchaDecoder.signature("M0 0L20 0L20 30L0 30Z"),
+        SvgCaptchaDecoder.signature(RING)), 0);
+    // arcs are not drawn by svg-captcha
+    assertNull(SvgCaptchaDecoder.signature("M0 0A5 5 0 0 1 10 10Z"));
+  }
+
+  @Test
+  public void maxDistanceSeparatesRedrawnFromDifferentGlyphs() throws IOException {
+    List<double[]> glyphs = SvgCaptchaDecoder.glyphs(sample());
+    String answer = SvgCaptchaDecoder.SAMPLE_ANSWER;
+    for (int i = 0; i < glyphs.size(); i++) {
+      for (int j = i + 1; j < glyphs.size(); j++) {
+        double d = SvgCaptchaDecoder.distance(glyphs.get(i), glyphs.get(j));
+        if (answer.charAt(i) == answer.charAt(j)) {
+          // the two E's are the same drawing
+          assertTrue(d < SvgCaptchaDecoder.MAX_DISTANCE / 4);
+        } else {
+          assertTrue(answer.charAt(i) + " vs " + answer.charAt(j) + ": " + d, d > 2 * SvgCaptchaDecoder.MAX_DISTANCE);
+        }
+      }
+    }
+    // still a match when drawn smaller and slightly tilted, no longer when tilted a lot
+    for (String path : glyphPaths(sample())) {
+      double[] glyph = SvgCaptchaDecoder.signature(path);
+      for (double degrees : new double[]{-2, -1, 1, 2}) {
+        double d = SvgCaptchaDecoder.distance(glyph, SvgCaptchaDecoder.signature(transform(path, degrees, 0.8, 100)));
+        assertTrue(degrees + " degrees: " + d, d < SvgCaptchaDecoder.MAX_DISTANCE);
+      }
+      double d = SvgCaptchaDecoder.distance(glyph, SvgCaptchaDecoder.signature(transform(path, 20, 0.8, 100)));
+      assertTrue("20 degrees: " + d, d > SvgCaptchaDecoder.MAX_DISTANCE);
+    }
+  }
+
+  @Test
+  public void decodesTheSampleButOnlyTrustsLearnedGlyphs() throws IOException {
+    SvgCaptchaDecoder decoder = SvgCaptchaDecoder.load(null);
+    assertEquals(SvgCaptchaDecoder.SAMPLE_ANSWER, decoder.decode(sample()));
+    assertEquals(0, decoder.size());
+    assertFalse(decoder.trusted(SvgCaptchaDecoder.SAMPLE_ANSWER));
+
+    assertTrue(decoder.learnAccepted(sample(), "EPgES", response(200, null)));
+    assertTrue(decoder.trusted("EPgES"));
+    assertTrue(decoder.trusted("gEP"));
+    assertFalse(decoder.trusted("EPgEX"));
+  }
+
+  @Test
+  public void unknownGlyphIsNotDecoded() throws IOException {
+    List<String> paths = glyphPaths(sample());
+    String svg = "<svg><path fill=\"#111\" d=\"" + paths.get(0) + "\"/>"
+        + "<path fill=\"#111\" d=\"" + transform(RING, 0, 1, 200) + "\"/></svg>";
+    SvgCaptchaDecoder decoder = SvgCaptchaDecoder.load(null);
+    assertNull(decoder.decode(svg));
+    assertNull(decoder.decode("<svg><path d=\"M16 45 C91 45,88 29,148 29\" fill=\"none\"/></svg>"));
+  }
+
+  @Test
+  public void learnsOnlyAnswersTheServerAccepted() throws IOException {
+    SvgCaptchaDecoder decoder = SvgCaptchaDecoder.load(null);
+    assertFalse(decoder.learnAccepted(sample(), "EPgES", response(400, SvgCaptchaDecoder.INVALID_CAPTCHA)));
+    assertFalse(decoder.learnAccepted(sample(), "EPgES", response(409, SvgCaptchaDecoder.INVALID_CAPTCHA)));
+    assertFalse(decoder.learnAccepted(sample(), "EPgES", response(401, null)));
+    assertFalse(decoder.learnAccepted(sample(), "EPgES", response(500, null)));
+    assertFalse(decoder.learnAccepted(sample(), "EPgES", new HashMap<>()));
+    assertFalse(decoder.learnAccepted(sample(), "EPgES", null));
+    assertEquals(0, decoder.size());
+
+    // a full slot (409) is only reported after the captcha was checked
+    assertTrue(decoder.learnAccepted(sample(), "EPgES", response(409, "APPOIN0040")));
+    // 4 distinct glyphs, the second E is the same drawing
+    assertEquals(4, decoder.size());
+    assertTrue(decoder.learnAccepted(sample(), "EPgES", response(200, null)));
+    assertTrue(decoder.learnAccepted(sample(), "EPgES", response(204, null)));
+    assertEquals(4, decoder.size());
+    // an answer that does not line up with the glyphs
+    assertFalse(decoder.learnAccepted(sample(), "EPgE", response(200, null)));
+  }
+
+  @Test
+  public void savesLearnedTemplatesOnly() throws IOException {
+    File file = folder.newFile("captcha-templates.json");
+    SvgCaptchaDecoder decoder = SvgCaptchaDecoder.load(null);
+    decoder.save(file);
+    assertFalse(SvgCaptchaDecoder.load(file).trusted("E"));
+
+    decoder.learn(sample(), "EPgES");
+    decoder.save(file);
+    SvgCaptchaDecoder loaded = SvgCaptchaDecoder.load(file);
+    assertEquals(SvgCaptchaDecoder.SAMPLE_ANSWER, loaded.decode(sample()));
+    // the sample glyphs themselves, as older files saved them along with the learned ones
+    assertEquals(0, loaded.size());
+
+    String shifted = "<svg>" + glyphPaths(sample()).stream()
+        .map(path -> "<path fill=\"#111\" d=\"" + transform(path, 2, 0.9, 10) + "\"/>")
+        .reduce("", String::concat) + "</svg>";
+    decoder.learn(shifted, "EPgES");
+    decoder.save(file);
+    loaded = SvgCaptchaDecoder.load(file);
+    assertEquals(4, loaded.size());
+    assertTrue(loaded.trusted("EPgES"));
+  }
+
+  private static Map<String, Object> response(int status, String errorCode) {
+    Map<String, Object> response = new HashMap<>();
+    response.put("status_code", status);
+    if (errorCode != null) {
+      response.put("errorCode", errorCode);
+    }
+    return response;
+  }
+
+  private static String sample() throws IOException {
+    try (InputStream in = SvgCaptchaDecoderTest.class.getResourceAsStream("/captcha-sample.svg")) {
+      return IOUtils.toString(in, StandardCharsets.UTF_8);
+    }
+  }
+
+  private static List<String> glyphPaths(String svg) {
+    List<String> paths = new ArrayList<>();
+    Matcher matcher = Pattern.compile("<path fill=\"[^\"n]+\" d=\"([^\"]+)\"").matcher(svg);
+    while (matcher.find()) {
+      paths.add(matcher.group(1));
+    }
+    assertEquals(5, paths.size());
+    return paths;
+  }
+
+  // rotates and scales the absolute coordinates of a path around the origin, then shifts it right
+  private static String transform(String d, double degrees, double scale, double shift) {
+    double cos = Math.cos(Math.toRadians(degrees));
+    double sin = Math.sin(Math.toRadians(degrees));
+    Matcher matcher = Pattern.compile("(-?[0-9.]+)[ ,](-?[0-9.]+)").matcher(d);
+    StringBuffer sb = new StringBuffer();
+    while (matcher.find()) {
+      double x = Double.parseDouble(matcher.group(1));
+      double y = Double.parseDouble(matcher.group(2));
+      matcher.appendReplacement(sb, String.format(Locale.ROOT, "%.2f %.2f",
+          scale * (x * cos - y * sin) + shift, scale * (x * sin + y * cos) + shift));
+    }
+    matcher.appendTail(sb);
+    return sb.toString();
+  }
+}
@@ -0,0 +1,137 @@
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link TokenManager} must renew a token only when it is about to expire or was rejected.
+ */
+public class TokenManagerTest {
+
+  /**
+   * Hands out scripted tokens and counts the logins (OTP requests) it stands in for.
+   */
+  private static final class StubAuthenticator implements TokenManager.Authenticator {
+    final Deque<String> tokens;
+    int calls;
+
+    StubAuthenticator(String... tokens) {
+      this.tokens = new ArrayDeque<>(Arrays.asList(tokens));
+    }
+
+    @Override
+    public String authenticate() {
+      calls++;
+      return tokens.remove();
+    }
+  }
+
+  @Test
+  public void readsTheExpiryFromTheJwtExpClaim() {
+    assertEquals(1_700_000_000_000L, TokenManager.expiryOf(jwt("{\"user_name\":\"x\",\"exp\":1700000000}")));
+    // payload lengths that base64url-encode without padding
+    assertEquals(1_700_000_000_000L, TokenManager.expiryOf(jwt("{\"exp\":1700000000}")));
+    assertEquals(1_700_000_000_000L, TokenManager.expiryOf(jwt("{\"exp\":1700000000,\"a\":1}")));
+  }
+
+  @Test
+  public void unreadableTokensHaveNoExpiry() {
+    assertEquals(0, TokenManager.expiryOf(null));
+    assertEquals(0, TokenManager.expiryOf("opaque-token"));
+    assertEquals(0, TokenManager.expiryOf("header.%%%.signature"));
+    assertEquals(0, TokenManager.expiryOf(jwt("not json")));
+    assertEquals(0, TokenManager.expiryOf(jwt("{\"user_name\":\"x\"}")));
+    assertEquals(0, TokenManager.expiryOf(jwt("{\"exp\":\"soon\"}")));
+  }
+
+  @Test
+  public void unreadableTokensLiveForOneSession() throws Exception {
+    long before = System.currentTimeMillis();
+    TokenManager manager = new TokenManager("opaque-token", new StubAuthenticator());
+    long after = System.currentTimeMillis();
+    assertTrue(manager.getExpiresAt() >= before + TokenManager.SESSION_MS);
+    assertTrue(manager.getExpiresAt() <= after + TokenManager.SESSION_MS);
+    assertEquals("opaque-token", manager.current());
+  }
+
+  @Test
+  public void keepsAValidTokenWithoutLoggingIn() throws Exception {
+    String valid = jwtExpiringIn(TimeUnit.MINUTES.toMillis(10));
+    StubAuthenticator authenticator = new StubAuthenticator();
+    TokenManager manager = new TokenManager(valid, authenticator);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(valid, manager.current());
+    }
+    assertEquals(0, authenticator.calls);
+  }
+
+  @Test
+  public void renewsWithinTheRefreshMargin() throws Exception {
+    String expiring = jwtExpiringIn(TokenManager.REFRESH_MARGIN_MS / 2);
+    String renewed = jwtExpiringIn(TimeUnit.MINUTES.toMillis(15));
+    StubAuthenticator authenticator = new StubAuthenticator(renewed);
+    TokenManager manager = new TokenManager(expiring, authenticator);
+    assertEquals(renewed, manager.current());
+    assertEquals(renewed, manager.current());
+    assertEquals(1, authenticator.calls);
+  }
+
+  @Test
+  public void invalidateOnlyDropsTheRejectedToken() throws Exception {
+    String first = jwtExpiringIn(TimeUnit.MINUTES.toMillis(10));
+    String second = jwtExpiringIn(TimeUnit.MINUTES.toMillis(12));
+    StubAuthenticator authenticator = new StubAuthenticator(second);
+    TokenManager manager = new TokenManager(first, authenticator);
+
+    manager.invalidate("some-older-token");
+    assertEquals(first, manager.current());
+    assertEquals(0, authenticator.calls);
+
+    manager.invalidate(first);
+    assertEquals(second, manager.current());
+    assertEquals(1, authenticator.calls);
+
+    // a late 401 for the replaced token must not throw away the new one
+    manager.invalidate(first);
+    assertEquals(second, manager.current());
+    assertEquals(1, authenticator.calls);
+  }
+
+  @Test
+  public void onlyA401FromTheCurrentTokenRenewsIt() throws Exception {
+    String first = jwtExpiringIn(TimeUnit.MINUTES.toMillis(10));
+    String second = jwtExpiringIn(TimeUnit.MINUTES.toMillis(12));
+    StubAuthenticator authenticator = new StubAuthenticator(second);
+    TokenManager manager = new TokenManager(first, authenticator);
+
+    assertFalse(manager.onResponse(TokenManager.BEARER + first, 200));
+    assertFalse(manager.onResponse(TokenManager.BEARER + first, 403));
+    assertFalse(manager.onResponse(null, 401));
+    assertEquals(first, manager.current());
+    assertEquals(0, authenticator.calls);
+
+    assertTrue(manager.onResponse(TokenManager.BEARER + first, 401));
+    assertEquals(second, manager.current());
+    assertEquals(1, authenticator.calls);
+  }
+
+  private static String jwtExpiringIn(long millis) {
+    long exp = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() + millis);
+    // distinct tokens for the same second
+    return jwt("{\"user_name\":\"" + System.nanoTime() + "\",\"exp\":" + exp + "}");
+  }
+
+  private static String jwt(String payload) {
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    return encoder.encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8)) + "."
+        + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".c2lnbmF0dXJl";
+  }
+}